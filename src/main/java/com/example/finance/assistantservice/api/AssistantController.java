@@ -2,27 +2,32 @@
 package com.example.finance.assistantservice.api;
 
 import com.example.finance.assistantservice.dto.AnswerResponse;
+import com.example.finance.assistantservice.model.IngestJob;
 import com.example.finance.assistantservice.service.AnswerService;
-import com.example.finance.assistantservice.service.IngestService;
+import com.example.finance.assistantservice.service.ConversationMemory;
+import com.example.finance.assistantservice.service.IngestJobService;
 import com.example.finance.assistantservice.service.VectorSearchService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.bind.annotation.*;
 
 import java.nio.file.Path;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/assistant")
 @RequiredArgsConstructor
 public class AssistantController {
 
-    private final IngestService ingestService;
+    private final IngestJobService ingestJobService;
     private final VectorSearchService vectorSearchService;
     private final AnswerService answerService;
+    private final ConversationMemory conversationMemory;
 
-    // Single request type
-    public record QueryReq(String text, Integer topK) {}
+    // Single request type; sessionId is optional and turns on conversation memory
+    public record QueryReq(String text, Integer topK, String sessionId) {}
 
     // Make default path optional
     @Value("${app.ingest.path:}")
@@ -76,12 +81,13 @@ public class AssistantController {
             }
         }
 
-        int saved = ingestService.ingestFile(filePath);
-        return Map.of("ingestedChunks", saved, "source", path);
+        // runs in the background; poll /ingest/jobs/{id} for progress
+        IngestJob job = ingestJobService.submitFile(filePath);
+        return view(job, path);
     }
 
     @PostMapping("/ingest/remote")
-    public Map<String, Object> ingestRemote(@RequestBody Map<String, Object> body) throws Exception {
+    public Map<String, Object> ingestRemote(@RequestBody Map<String, Object> body) {
         String u = asString(body, "username", null);
         String p = asString(body, "password", null);
         if (u == null || p == null) {
@@ -95,8 +101,47 @@ public class AssistantController {
         String accUrl = asString(body, "accountsUrl", accountsUrl);
         String txnUrl = asString(body, "transactionsUrl", transactionsUrl);
 
-        int saved = ingestService.ingestFromApis(tokenEndpoint, cid, csec, scp, u, p, accUrl, txnUrl);
-        return Map.of("ingestedChunks", saved, "source", "remote-apis");
+        IngestJob job = ingestJobService.submitRemote(tokenEndpoint, cid, csec, scp, u, p, accUrl, txnUrl);
+        return view(job, "remote-apis");
+    }
+
+    @GetMapping("/ingest/jobs/{id}")
+    public Map<String, Object> ingestJob(@PathVariable String id) {
+        return jobOrError(id, ingestJobService.get(id));
+    }
+
+    @PostMapping("/ingest/jobs/{id}/cancel")
+    public Map<String, Object> cancelIngestJob(@PathVariable String id) {
+        return jobOrError(id, ingestJobService.cancel(id));
+    }
+
+    @PostMapping("/ingest/jobs/{id}/resume")
+    public Map<String, Object> resumeIngestJob(@PathVariable String id) {
+        try {
+            return jobOrError(id, ingestJobService.resume(id));
+        } catch (IllegalStateException e) {
+            return Map.of("error", e.getMessage(), "jobId", id);
+        }
+    }
+
+    private static Map<String, Object> jobOrError(String id, Optional<IngestJob> job) {
+        return job.map(j -> view(j, j.getSource()))
+                .orElseGet(() -> Map.of("error", "Ingest job not found: " + id));
+    }
+
+    private static Map<String, Object> view(IngestJob job, String source) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("jobId", job.getId());
+        out.put("status", job.getStatus());
+        out.put("source", source);
+        out.put("recordsParsed", job.getRecordsParsed());
+        out.put("chunksPlanned", job.getChunksPlanned());
+        out.put("chunksEmbedded", job.getChunksEmbedded());
+        out.put("chunksWritten", job.getChunksWritten());
+        out.put("attempts", job.getAttempts());
+        if (job.getError() != null) out.put("error", job.getError());
+        out.put("updatedAt", job.getUpdatedAt());
+        return out;
     }
 
     private static String asString(Map<String, Object> m, String key, String def) {
@@ -107,10 +152,25 @@ public class AssistantController {
     @PostMapping("/chat")
     public Map<String, String> chat(@RequestBody QueryReq req) {
         int k = (req.topK() != null && req.topK() > 0) ? req.topK() : 5;
-        var hits = vectorSearchService.search(req.text(), k);
+        String sessionId = req.sessionId();
+        if (sessionId == null || sessionId.isBlank()) {
+            var hits = vectorSearchService.search(req.text(), k);
+            return Map.of("answer", answerService.generateAnswer(req.text(), hits));
+        }
+
+        // follow-ups are rewritten so retrieval never needs the pasted history
+        String question = conversationMemory.standaloneQuery(sessionId, req.text());
+        var hits = vectorSearchService.search(question, k);
+
+        var answer = answerService.generateAnswer(question, conversationMemory.history(sessionId), hits);
+        conversationMemory.record(sessionId, req.text(), answer);
+
+        return Map.of("answer", answer, "sessionId", sessionId, "query", question);
+    }
 
-        var answer = answerService.generateAnswer(req.text(), hits);
-        
-        return Map.of("answer", answer);
+    @DeleteMapping("/chat/sessions/{sessionId}")
+    public Map<String, Object> forgetSession(@PathVariable String sessionId) {
+        conversationMemory.forget(sessionId);
+        return Map.of("sessionId", sessionId, "cleared", true);
     }
 }
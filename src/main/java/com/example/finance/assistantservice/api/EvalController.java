@@ -0,0 +1,58 @@
+// src/main/java/com/example/finance/assistantservice/api/EvalController.java
+package com.example.finance.assistantservice.api;
+
+import com.example.finance.assistantservice.service.RetrievalEvaluator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.web.bind.annotation.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/assistant/eval")
+@RequiredArgsConstructor
+public class EvalController {
+
+    private final RetrievalEvaluator evaluator;
+
+    @Value("${app.ingest.path:}")
+    private String defaultPath;
+
+    @Value("${app.eval.queries:50}")
+    private int defaultQueries;
+
+    @Value("${app.eval.ks:1,5,10}")
+    private List<Integer> defaultKs;
+
+    @Value("${app.eval.targetRecall:0.95}")
+    private double defaultTargetRecall;
+
+    // Sweeps search effort against exact top-k; a dry run unless the body says "apply": true
+    @PostMapping("/tune")
+    public Object tune(@RequestBody(required = false) Map<String, Object> body) throws Exception {
+        Map<String, Object> b = body != null ? body : Map.of();
+        String path = b.get("path") != null ? b.get("path").toString() : defaultPath;
+        if (path == null || path.isBlank()) {
+            return Map.of("error", "No export path. Pass {\"path\": \"/abs/path/file.json\"} or set app.ingest.path");
+        }
+        Path filePath = Path.of(path).toAbsolutePath().normalize();
+        if (!Files.exists(filePath)) {
+            return Map.of("error", "File not found: " + filePath);
+        }
+
+        int queries = b.get("queries") != null ? Integer.parseInt(b.get("queries").toString()) : defaultQueries;
+        double target = b.get("targetRecall") != null ? Double.parseDouble(b.get("targetRecall").toString()) : defaultTargetRecall;
+        boolean apply = b.get("apply") != null && Boolean.parseBoolean(b.get("apply").toString());
+        List<Integer> ks = defaultKs;
+        if (b.get("ks") instanceof List<?> list) {
+            ks = new ArrayList<>();
+            for (Object k : list) ks.add(Integer.parseInt(k.toString()));
+        }
+
+        return evaluator.tune(filePath, queries, ks, target, apply);
+    }
+}
@@ -0,0 +1,49 @@
+// src/main/java/com/example/finance/assistantservice/api/ShardController.java
+package com.example.finance.assistantservice.api;
+
+import com.example.finance.assistantservice.dto.ShardSearchRequest;
+import com.example.finance.assistantservice.dto.ShardSearchResponse;
+import com.example.finance.assistantservice.service.LocalChunkIndex;
+import com.example.finance.assistantservice.service.ScatterGatherSearchService;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/assistant")
+@RequiredArgsConstructor
+public class ShardController {
+
+    private final LocalChunkIndex localIndex;
+    private final ScatterGatherSearchService scatterGather;
+    private final EmbeddingModel embeddingModel;
+
+    // Shard side: top-k over this node's slice only; the caller already embedded the query
+    @PostMapping("/shard/search")
+    public ShardSearchResponse shardSearch(@RequestBody ShardSearchRequest req) {
+        int k = (req.topK() != null && req.topK() > 0) ? req.topK() : 5;
+        var hits = localIndex.search(req.vector(), k);
+        return new ShardSearchResponse(localIndex.shardId(), localIndex.shardCount(), localIndex.size(),
+                localIndex.snapshotVersion(), hits);
+    }
+
+    // Coordinator side: embed once, fan out to app.shard.nodes, merge
+    @PostMapping("/search")
+    public Map<String, Object> search(@RequestBody AssistantController.QueryReq req) {
+        if (!scatterGather.isEnabled()) {
+            return Map.of("error", "No shard nodes configured. Set app.shard.nodes on the coordinator");
+        }
+        int k = (req.topK() != null && req.topK() > 0) ? req.topK() : 5;
+        var result = scatterGather.search(embeddingModel.embed(req.text()).content().vector(), k);
+
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("results", result.hits());
+        out.put("shardsAsked", result.shardsAsked());
+        out.put("shardsAnswered", result.shardsAnswered());
+        out.put("partial", result.partial());
+        return out;
+    }
+}
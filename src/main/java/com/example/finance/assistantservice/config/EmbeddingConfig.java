@@ -1,8 +1,10 @@
 // src/main/java/com/example/finance/assistantservice/config/EmbeddingConfig.java
 package com.example.finance.assistantservice.config;
 
+import dev.langchain4j.model.Tokenizer;
 import dev.langchain4j.model.embedding.EmbeddingModel;
 import dev.langchain4j.model.openai.OpenAiEmbeddingModel;
+import dev.langchain4j.model.openai.OpenAiTokenizer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -13,11 +15,22 @@ public class EmbeddingConfig {
     @Bean
     EmbeddingModel embeddingModel(
             @Value("${openai.apiKey}") String apiKey,
-            @Value("${openai.embeddingModel:text-embedding-3-small}") String model
+            @Value("${openai.embeddingModel:text-embedding-3-small}") String model,
+            // shortened (Matryoshka) embeddings; unset = the model's native width
+            @Value("${openai.embeddingDimensions:#{null}}") Integer dimensions
     ) {
         return OpenAiEmbeddingModel.builder()
                 .apiKey(apiKey)
                 .modelName(model)
+                .dimensions(dimensions)
                 .build();
     }
+
+    // Same encoding the embedding endpoint bills against, so chunk budgets are real tokens
+    @Bean
+    Tokenizer embeddingTokenizer(
+            @Value("${openai.embeddingModel:text-embedding-3-small}") String model
+    ) {
+        return new OpenAiTokenizer(model);
+    }
 }
@@ -0,0 +1,39 @@
+package com.example.finance.assistantservice.config;
+
+import com.example.finance.assistantservice.model.Chunk;
+import com.example.finance.assistantservice.model.IngestJob;
+import com.example.finance.assistantservice.model.StagedChunk;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+
+/**
+ * Indexes the ingest pipeline queries on. Created here rather than through mapping
+ * annotations because Boot leaves {@code spring.data.mongodb.auto-index-creation} off;
+ * creating an index that already exists is a no-op.
+ */
+@Configuration
+@RequiredArgsConstructor
+public class MongoIndexConfig {
+
+    private final MongoTemplate mongoTemplate;
+
+    @PostConstruct
+    void createIndexes() {
+        // resume reads a job's plan by position; (jobId, pos) identifies a staged chunk
+        mongoTemplate.indexOps(StagedChunk.class).ensureIndex(new Index()
+                .on("jobId", Sort.Direction.ASC).on("pos", Sort.Direction.ASC).unique());
+
+        // commit, resume check, cancel and discard all select chunks by job
+        mongoTemplate.indexOps(Chunk.class).ensureIndex(new Index().on("metadata.jobId", Sort.Direction.ASC));
+
+        // lease takeover, failed-job expiry, snapshot version and the superseded check
+        mongoTemplate.indexOps(IngestJob.class).ensureIndex(new Index()
+                .on("status", Sort.Direction.ASC).on("updatedAt", Sort.Direction.DESC));
+        mongoTemplate.indexOps(IngestJob.class).ensureIndex(new Index()
+                .on("status", Sort.Direction.ASC).on("createdAt", Sort.Direction.ASC));
+    }
+}
@@ -0,0 +1,4 @@
+// src/main/java/com/example/finance/assistantservice/dto/ShardSearchRequest.java
+package com.example.finance.assistantservice.dto;
+
+public record ShardSearchRequest(float[] vector, Integer topK) {}
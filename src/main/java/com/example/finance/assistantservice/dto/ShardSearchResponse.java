@@ -0,0 +1,14 @@
+// src/main/java/com/example/finance/assistantservice/dto/ShardSearchResponse.java
+package com.example.finance.assistantservice.dto;
+
+import com.example.finance.assistantservice.service.VectorSearchService;
+
+import java.util.List;
+
+public record ShardSearchResponse(
+        int shardId,
+        int shardCount,
+        int indexSize,
+        String dataVersion,         // null when the shard is kept live by the change stream
+        List<VectorSearchService.SearchHit> hits
+) {}
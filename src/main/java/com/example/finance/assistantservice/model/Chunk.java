@@ -16,5 +16,6 @@ public class Chunk {
     private String docId;                 // source doc identifier
     private String text;                  // chunk content
     private List<Double> embedding;       // vector embedding
+    private byte[] embeddingF32;          // same vector as little-endian float32; read by the two-stage rescore
     private Map<String, Object> metadata; // title, section, etc.
 }
@@ -0,0 +1,35 @@
+// src/main/java/com/example/finance/assistantservice/model/IngestJob.java
+package com.example.finance.assistantservice.model;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+@Document("ingest_jobs")
+@Data @Builder @NoArgsConstructor @AllArgsConstructor
+public class IngestJob {
+
+    public enum Status { QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED }
+
+    @Id
+    private String id;
+    private String type;                  // file | remote
+    private String source;                // file path or "remote-apis"
+    private String docId;                 // docId stamped on the produced chunks
+    private Status status;
+    private String owner;                 // instance that runs the job while its lease is fresh
+    private Instant heartbeatAt;          // renewed by the owner; a stale one lets another instance take over
+    private int attempts;
+    private boolean staged;               // chunk plan persisted; source no longer needed
+    private int recordsParsed;
+    private int chunksPlanned;
+    private long tokensPlanned;
+    private int chunksEmbedded;
+    private int chunksWritten;            // last committed batch boundary = resume point
+    private boolean cancelRequested;
+    private String error;
+    private Instant createdAt;
+    private Instant updatedAt;
+}
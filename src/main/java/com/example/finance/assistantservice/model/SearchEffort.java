@@ -0,0 +1,17 @@
+package com.example.finance.assistantservice.model;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.Map;
+
+@Document("search_tuning")
+@Data @Builder @NoArgsConstructor @AllArgsConstructor
+public class SearchEffort {
+    @Id
+    private String id;                    // atlas.numCandidates | twoStage.candidates
+    private Map<String, Integer> byK;     // k -> effort; keys are strings for BSON
+    private Instant updatedAt;
+}
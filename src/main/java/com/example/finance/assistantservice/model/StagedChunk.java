@@ -0,0 +1,20 @@
+// src/main/java/com/example/finance/assistantservice/model/StagedChunk.java
+package com.example.finance.assistantservice.model;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+@Document("ingest_staged_chunks")
+@Data @Builder @NoArgsConstructor @AllArgsConstructor
+public class StagedChunk {
+    @Id
+    private String id;
+    private String jobId;                 // owning ingest job
+    private int pos;                      // position in the job's chunk plan
+    private String section;
+    private String period;
+    private String text;                  // rendered chunk, not yet embedded
+    private int records;
+    private int tokens;
+}
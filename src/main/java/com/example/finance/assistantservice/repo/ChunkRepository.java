@@ -2,5 +2,28 @@ package com.example.finance.assistantservice.repo;
 
 import com.example.finance.assistantservice.model.Chunk;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.Update;
 
-public interface ChunkRepository extends MongoRepository<Chunk, String> {}
+import java.util.Collection;
+import java.util.List;
+
+public interface ChunkRepository extends MongoRepository<Chunk, String> {
+
+    // chunks of a job that has not committed yet carry committed=false; older chunks have no flag
+    @Query("{ 'metadata.committed': { $ne: false } }")
+    List<Chunk> findCommitted();
+
+    @Query("{ 'metadata.jobId': ?0 }")
+    @Update("{ '$set': { 'metadata.committed': true } }")
+    long markCommitted(String jobId);
+
+    @Query(value = "{ 'metadata.jobId': ?0 }", count = true)
+    long countByJobId(String jobId);
+
+    @Query(value = "{ 'metadata.jobId': ?0 }", delete = true)
+    long deleteByJobId(String jobId);
+
+    @Query(value = "{ 'metadata.jobId': { $nin: ?0 } }", delete = true)
+    long deleteByJobIdNotIn(Collection<String> jobIds);
+}
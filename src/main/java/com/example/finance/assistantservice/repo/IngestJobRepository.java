@@ -0,0 +1,14 @@
+package com.example.finance.assistantservice.repo;
+
+import com.example.finance.assistantservice.model.IngestJob;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface IngestJobRepository extends MongoRepository<IngestJob, String> {
+
+    List<IngestJob> findByStatusIn(Collection<IngestJob.Status> statuses);
+
+    List<IngestJob> findByOwnerAndStatusIn(String owner, Collection<IngestJob.Status> statuses);
+}
@@ -0,0 +1,14 @@
+package com.example.finance.assistantservice.repo;
+
+import com.example.finance.assistantservice.model.StagedChunk;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.util.List;
+
+public interface StagedChunkRepository extends MongoRepository<StagedChunk, String> {
+
+    List<StagedChunk> findByJobIdAndPosGreaterThanEqualOrderByPosAsc(String jobId, int pos, Pageable page);
+
+    long deleteByJobId(String jobId);
+}
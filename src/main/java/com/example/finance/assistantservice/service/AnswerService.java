@@ -91,6 +91,13 @@ public class AnswerService {
      * RAG-based answer generation using LLM with retrieved context
      */
     public String generateAnswer(String question, java.util.List<VectorSearchService.SearchHit> hits) {
+        return generateAnswer(question, "", hits);
+    }
+
+    /**
+     * Same as above, with the session's conversation memory (summary + recent turns) in the prompt
+     */
+    public String generateAnswer(String question, String history, java.util.List<VectorSearchService.SearchHit> hits) {
         // Format the retrieved context for the LLM
         StringBuilder context = new StringBuilder();
         for (var hit : hits) {
@@ -99,17 +106,17 @@ public class AnswerService {
         }
         
         // Create a prompt that includes both context and question
-        String prompt = buildRAGPrompt(question, context.toString());
+        String prompt = buildRAGPrompt(question, history, context.toString());
         
         // Use the LLM to generate the answer
         return chatModel.generate(prompt);
     }
     
-    private String buildRAGPrompt(String question, String context) {
+    private String buildRAGPrompt(String question, String history, String context) {
         return String.format("""
             You are a helpful financial assistant. Answer the user's question based ONLY on the provided context.
             
-            CONTEXT:
+            %sCONTEXT:
             %s
             
             QUESTION: %s
@@ -117,12 +124,12 @@ public class AnswerService {
             INSTRUCTIONS:
             - Answer based only on the information provided in the context above
             - Be specific about amounts, dates, and merchant names when available
-            - If the context contains transaction data with amounts in cents (e.g., -19516), convert to dollars (e.g., $195.16)
+            - Amounts in the context are already in major currency units (e.g., -195.16 USD); negative amounts are spending
             - If you cannot answer the question based on the context, say so clearly
             - Format monetary amounts as currency (e.g., $195.16)
             - Be concise but complete in your response
             
-            ANSWER:""", context, question);
+            ANSWER:""", history == null || history.isBlank() ? "" : history + "\n", context, question);
     }
 
     // ---------- helpers ----------
@@ -0,0 +1,157 @@
+package com.example.finance.assistantservice.service;
+
+import com.example.finance.assistantservice.model.Chunk;
+import com.mongodb.MongoCommandException;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import lombok.RequiredArgsConstructor;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps {@link LocalChunkIndex} in step with the {@code chunks} collection on every replica,
+ * whichever instance handled the ingest. Changes arrive through a Mongo change stream
+ * (requires a replica set) and are applied one document at a time.
+ *
+ * The resume token is only held in memory and used to reconnect after a dropped cursor.
+ * It is deliberately not persisted: the index it positions also lives in memory, so a
+ * fresh process has nothing to resume and always starts with a full rebuild, as does an
+ * expired token or an invalidating event (drop/rename).
+ */
+@Component
+@ConditionalOnProperty(name = "app.vector.sync.enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class ChunkChangeStreamListener implements SmartLifecycle {
+
+    private static final String COLLECTION = "chunks";
+    // CappedPositionLost, ChangeStreamFatalError, ChangeStreamHistoryLost
+    private static final Set<Integer> TOKEN_EXPIRED = Set.of(136, 280, 286);
+
+    private final MongoTemplate mongoTemplate;
+    private final LocalChunkIndex index;
+
+    @Value("${app.vector.sync.retryMs:2000}")
+    private long retryMs;
+
+    private volatile boolean running;
+    private Thread worker;
+    private BsonDocument resumeToken;
+
+    @Override
+    public void start() {
+        running = true;
+        worker = new Thread(this::run, "chunk-change-stream");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+            try { worker.join(5000); } catch (InterruptedException ignored) { Thread.currentThread().interrupt(); }
+        }
+        index.markLive(false);
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                follow();
+            } catch (MongoCommandException e) {
+                if (TOKEN_EXPIRED.contains(e.getErrorCode())) resumeToken = null;
+                pause();
+            } catch (RuntimeException e) {
+                // keep serving the last good index while reconnecting; a stale token fails above
+                if (running) pause();
+            }
+        }
+    }
+
+    private void follow() {
+        var stream = mongoTemplate.getCollection(COLLECTION)
+                .watch()
+                .fullDocument(FullDocument.UPDATE_LOOKUP)
+                .maxAwaitTime(1, TimeUnit.SECONDS);
+        boolean rebuild = resumeToken == null;
+        if (!rebuild) stream = stream.resumeAfter(resumeToken);
+
+        try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = stream.cursor()) {
+            if (rebuild) {
+                // the cursor is already open, so writes racing the scan are replayed afterwards
+                index.markLive(false);
+                index.rebuild();
+                resumeToken = cursor.getResumeToken();
+            }
+            index.markLive(true);
+
+            while (running) {
+                ChangeStreamDocument<Document> change = cursor.tryNext();
+                if (change != null) {
+                    if (!apply(change)) {
+                        resumeToken = null;
+                        return;
+                    }
+                    resumeToken = change.getResumeToken();
+                } else if (cursor.getResumeToken() != null) {
+                    resumeToken = cursor.getResumeToken();
+                }
+            }
+        }
+    }
+
+    /** @return false when the event invalidates the stream and the index has to be rebuilt */
+    private boolean apply(ChangeStreamDocument<Document> change) {
+        switch (change.getOperationType()) {
+            case INSERT, UPDATE, REPLACE -> {
+                Document doc = change.getFullDocument();
+                if (doc != null) index.upsert(mongoTemplate.getConverter().read(Chunk.class, doc));
+                else index.remove(idOf(change.getDocumentKey()));
+                return true;
+            }
+            case DELETE -> {
+                index.remove(idOf(change.getDocumentKey()));
+                return true;
+            }
+            case DROP, RENAME, DROP_DATABASE, INVALIDATE -> {
+                return false;
+            }
+            default -> {
+                return true;
+            }
+        }
+    }
+
+    private static String idOf(BsonDocument key) {
+        BsonValue id = key != null ? key.get("_id") : null;
+        if (id == null) return null;
+        if (id.isObjectId()) return id.asObjectId().getValue().toHexString();
+        if (id.isString()) return id.asString().getValue();
+        return id.toString();
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(retryMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package com.example.finance.assistantservice.service;
+
+import dev.langchain4j.model.Tokenizer;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Session-scoped chat memory with a fixed footprint. The last few turns are kept verbatim;
+ * older ones are folded into a running summary capped at {@code summaryTokens}. Sessions
+ * live in an LRU map bounded by {@code maxSessions} and expire after {@code idleTtl}, so
+ * neither the prompt nor the heap grows with conversation length.
+ *
+ * Folding runs on a background thread so {@code /chat} never waits for the summary call;
+ * turns being folded stay in the prompt verbatim until the new summary lands. That backlog
+ * is capped at {@code foldingTokens}: if summarization falls behind or keeps failing, the
+ * oldest pending turns are dropped, so the prompt never exceeds summary + folding + recent.
+ *
+ * Sessions are held in this JVM only. With more than one replica, the load balancer must
+ * route a {@code sessionId} to the same instance (sticky sessions); a request that lands
+ * elsewhere, or follows a restart, silently starts a new conversation.
+ */
+@Service
+@RequiredArgsConstructor
+public class ConversationMemory {
+
+    private final ChatLanguageModel chatModel;
+    private final Tokenizer tokenizer;
+
+    @Value("${app.chat.memory.maxSessions:10000}")
+    private int maxSessions;
+
+    @Value("${app.chat.memory.idleTtl:30m}")
+    private Duration idleTtl;
+
+    @Value("${app.chat.memory.recentTurns:4}")
+    private int recentTurns;
+
+    @Value("${app.chat.memory.recentTokens:600}")
+    private int recentTokens;
+
+    @Value("${app.chat.memory.summaryTokens:200}")
+    private int summaryTokens;
+
+    @Value("${app.chat.memory.foldingTokens:600}")
+    private int foldingTokens;
+
+    @Value("${app.chat.memory.summaryThreads:2}")
+    private int summaryThreads;
+
+    private record Turn(String question, String answer, int tokens) {}
+
+    private static final class Conversation {
+        String summary = "";
+        final List<Turn> folding = new ArrayList<>();   // left the recent window, not yet in the summary
+        int foldingTokens;
+        int dropped;                                     // turns lost because the backlog hit its cap
+        boolean summarizing;
+        final Deque<Turn> recent = new ArrayDeque<>();
+        int recentTokens;
+        long lastAccess = System.currentTimeMillis();
+    }
+
+    private ThreadPoolExecutor summarizer;
+
+    // access-ordered: the eldest entry is always the least recently used session
+    private final LinkedHashMap<String, Conversation> sessions = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Conversation> eldest) {
+            return size() > maxSessions;
+        }
+    };
+
+    @PostConstruct
+    void startSummarizer() {
+        AtomicInteger n = new AtomicInteger();
+        summarizer = new ThreadPoolExecutor(summaryThreads, summaryThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(1000),
+                r -> {
+                    Thread t = new Thread(r, "chat-summary-" + n.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        summarizer.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    void stopSummarizer() {
+        summarizer.shutdownNow();
+    }
+
+    /**
+     * Rewrites a follow-up ("and last month?") into a self-contained retrieval query.
+     * Returns the text unchanged when the session has no history yet.
+     */
+    public String standaloneQuery(String sessionId, String text) {
+        Conversation c = lookup(sessionId, false);
+        if (c == null) return text;
+        String history;
+        synchronized (c) {
+            if (isEmpty(c)) return text;
+            history = render(c);
+        }
+        String prompt = String.format("""
+            Rewrite the user's latest message as a standalone question about their finances.
+            Resolve references to earlier turns (merchants, categories, accounts) and turn relative
+            dates ("last month", "yesterday") into explicit ones. Today is %s.
+            Return only the rewritten question.
+
+            %s
+            LATEST MESSAGE: %s
+
+            STANDALONE QUESTION:""", LocalDate.now(), history, text);
+        String rewritten = chatModel.generate(prompt).trim();
+        return rewritten.isEmpty() ? text : rewritten;
+    }
+
+    /** Summary plus verbatim recent turns, ready to drop into a prompt; empty for new sessions. */
+    public String history(String sessionId) {
+        Conversation c = lookup(sessionId, false);
+        if (c == null) return "";
+        synchronized (c) {
+            return isEmpty(c) ? "" : render(c);
+        }
+    }
+
+    public void record(String sessionId, String question, String answer) {
+        Conversation c = lookup(sessionId, true);
+        synchronized (c) {
+            Turn t = turn(question, answer);
+            c.recent.addLast(t);
+            c.recentTokens += t.tokens();
+
+            // fold the oldest turns into the summary, always keeping the newest one verbatim
+            while (c.recent.size() > 1 && (c.recent.size() > recentTurns || c.recentTokens > recentTokens)) {
+                Turn old = c.recent.removeFirst();
+                c.recentTokens -= old.tokens();
+                c.folding.add(old);
+                c.foldingTokens += old.tokens();
+            }
+            // summarization is behind or failing: drop the oldest pending turns rather than grow the prompt
+            while (c.foldingTokens > foldingTokens && !c.folding.isEmpty()) {
+                c.foldingTokens -= c.folding.remove(0).tokens();
+                c.dropped++;
+            }
+            if (!c.folding.isEmpty() && !c.summarizing) {
+                try {
+                    summarizer.execute(() -> fold(c));
+                    c.summarizing = true;
+                } catch (RejectedExecutionException e) {
+                    // backlog full: the turns stay verbatim and the next record() tries again
+                }
+            }
+        }
+    }
+
+    /** A turn that fits {@code recentTokens} on its own; the newest turn is always kept, so it must. */
+    private Turn turn(String question, String answer) {
+        int q = tokenizer.estimateTokenCountInText(question);
+        int a = tokenizer.estimateTokenCountInText(answer);
+        if (q + a > recentTokens) {
+            // the question keeps at most half the budget, the answer gets the rest
+            int questionBudget = Math.min(q, recentTokens / 2);
+            question = clip(question, questionBudget);
+            answer = clip(answer, recentTokens - questionBudget);
+            q = tokenizer.estimateTokenCountInText(question);
+            a = tokenizer.estimateTokenCountInText(answer);
+        }
+        return new Turn(question, answer, q + a);
+    }
+
+    /** Background: merges the folding turns into the summary, repeating while more arrive meanwhile. */
+    private void fold(Conversation c) {
+        while (true) {
+            String summary;
+            List<Turn> batch;
+            synchronized (c) {
+                if (c.folding.isEmpty()) {
+                    c.summarizing = false;
+                    return;
+                }
+                summary = c.summary;
+                batch = new ArrayList<>(c.folding);
+            }
+            String updated;
+            try {
+                updated = summarize(summary, batch);
+            } catch (RuntimeException e) {
+                // keep the turns verbatim; the next record() schedules another attempt
+                synchronized (c) {
+                    c.summarizing = false;
+                }
+                return;
+            }
+            synchronized (c) {
+                c.summary = updated;
+                // by identity: record() may have dropped some of the batch meanwhile
+                Set<Turn> done = Collections.newSetFromMap(new IdentityHashMap<>());
+                done.addAll(batch);
+                for (var it = c.folding.iterator(); it.hasNext(); ) {
+                    Turn t = it.next();
+                    if (done.contains(t)) {
+                        it.remove();
+                        c.foldingTokens -= t.tokens();
+                    }
+                }
+            }
+        }
+    }
+
+    public void forget(String sessionId) {
+        synchronized (sessions) {
+            sessions.remove(sessionId);
+        }
+    }
+
+    private Conversation lookup(String sessionId, boolean create) {
+        if (sessionId == null || sessionId.isBlank()) return null;
+        long now = System.currentTimeMillis();
+        synchronized (sessions) {
+            evictExpired(now);
+            Conversation c = sessions.get(sessionId);
+            if (c == null && create) {
+                c = new Conversation();
+                sessions.put(sessionId, c);
+            }
+            if (c != null) c.lastAccess = now;
+            return c;
+        }
+    }
+
+    private void evictExpired(long now) {
+        long cutoff = now - idleTtl.toMillis();
+        var it = sessions.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().lastAccess >= cutoff) break; // access order: the rest are newer
+            it.remove();
+        }
+    }
+
+    private String summarize(String summary, List<Turn> turns) {
+        StringBuilder older = new StringBuilder();
+        for (Turn t : turns) older.append("User: ").append(t.question()).append("\nAssistant: ").append(t.answer()).append('\n');
+        String prompt = String.format("""
+            Update the running summary of a conversation between a user and their financial assistant.
+            Keep facts that later questions may refer to: dates, amounts, merchants, categories, accounts.
+            Stay under %d words. Return only the summary.
+
+            CURRENT SUMMARY:
+            %s
+
+            TURNS TO ADD:
+            %s
+            UPDATED SUMMARY:""", summaryTokens * 3 / 4, summary.isEmpty() ? "(none)" : summary, older);
+        return clip(chatModel.generate(prompt).trim(), summaryTokens);
+    }
+
+    private String clip(String text, int maxTokens) {
+        int tokens = tokenizer.estimateTokenCountInText(text);
+        if (tokens <= maxTokens) return text;
+        // proportional cut is close enough; the model was already asked to stay under budget
+        return text.substring(0, (int) ((long) text.length() * maxTokens / tokens));
+    }
+
+    private static boolean isEmpty(Conversation c) {
+        return c.summary.isEmpty() && c.folding.isEmpty() && c.recent.isEmpty();
+    }
+
+    private static String render(Conversation c) {
+        StringBuilder sb = new StringBuilder();
+        if (!c.summary.isEmpty()) sb.append("CONVERSATION SUMMARY:\n").append(c.summary).append("\n\n");
+        if (!c.folding.isEmpty() || !c.recent.isEmpty()) {
+            sb.append("RECENT TURNS:\n");
+            if (c.dropped > 0) sb.append("(").append(c.dropped).append(" earlier turns omitted)\n");
+            List<Turn> turns = new ArrayList<>(c.folding);
+            turns.addAll(c.recent);
+            for (Turn t : turns) {
+                sb.append("User: ").append(t.question()).append('\n')
+                        .append("Assistant: ").append(t.answer()).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+}
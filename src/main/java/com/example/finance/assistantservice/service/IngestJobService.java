@@ -0,0 +1,428 @@
+package com.example.finance.assistantservice.service;
+
+import com.example.finance.assistantservice.model.IngestJob;
+import com.example.finance.assistantservice.model.IngestJob.Status;
+import com.example.finance.assistantservice.model.StagedChunk;
+import com.example.finance.assistantservice.repo.IngestJobRepository;
+import com.example.finance.assistantservice.repo.StagedChunkRepository;
+import com.example.finance.assistantservice.service.RecordChunker.RecordChunk;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs ingests as background jobs on a bounded executor.
+ *
+ * A job first stages its chunk plan in Mongo, then embeds and writes it batch by batch,
+ * checkpointing progress after each batch. A failed attempt is retried up to
+ * {@code maxAttempts}; retries, manual resumes and restarts all continue from the last
+ * written batch instead of re-embedding from scratch.
+ *
+ * The owning instance renews a heartbeat on its unfinished jobs. Any instance may claim a
+ * job whose heartbeat is older than {@code leaseMs}, so work left behind by a crashed or
+ * replaced container is picked up even though its hostname never comes back.
+ *
+ * Written chunks stay hidden from search until the job commits, which publishes them and
+ * drops the data they replace. Commits only move forward: a job is never committed once
+ * a job created after it has succeeded, and FAILED jobs that are superseded or older than
+ * {@code failedRetention} are cancelled and their hidden chunks removed.
+ */
+@Service
+@RequiredArgsConstructor
+public class IngestJobService {
+
+    private static final Set<Status> ACTIVE = EnumSet.of(Status.QUEUED, Status.RUNNING);
+    private static final String SUPERSEDED = "Superseded by a newer committed ingest";
+
+    private final IngestJobRepository jobs;
+    private final StagedChunkRepository stagedChunks;
+    private final IngestService ingestService;
+    private final LocalChunkIndex localIndex;
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${app.ingest.jobs.concurrency:2}")
+    private int concurrency;
+
+    @Value("${app.ingest.jobs.queueCapacity:100}")
+    private int queueCapacity;
+
+    @Value("${app.ingest.jobs.batchSize:32}")
+    private int batchSize;
+
+    @Value("${app.ingest.jobs.maxAttempts:3}")
+    private int maxAttempts;
+
+    @Value("${app.ingest.jobs.instanceId:${HOSTNAME:local}}")
+    private String instanceId;
+
+    @Value("${app.ingest.jobs.leaseMs:60000}")
+    private long leaseMs;
+
+    // how long a FAILED job keeps its staged plan and hidden chunks for a manual resume
+    @Value("${app.ingest.jobs.failedRetention:7d}")
+    private Duration failedRetention;
+
+    private ThreadPoolExecutor executor;
+    private ScheduledExecutorService leases;
+
+    @PostConstruct
+    void startExecutor() {
+        AtomicInteger n = new AtomicInteger();
+        executor = new ThreadPoolExecutor(concurrency, concurrency, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "ingest-job-" + n.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        leases = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ingest-job-lease");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    void stopExecutor() {
+        // interrupted jobs stay RUNNING; once their heartbeat goes stale any instance takes them over
+        leases.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void recover() {
+        // our own hostname: the previous process under this name is gone, no need to wait for the lease
+        for (IngestJob job : jobs.findByOwnerAndStatusIn(instanceId, ACTIVE)) {
+            if (claim(job)) dispatch(job.getId(), null);
+        }
+        long renewEvery = Math.max(1000, leaseMs / 3);
+        leases.scheduleWithFixedDelay(this::heartbeat, renewEvery, renewEvery, TimeUnit.MILLISECONDS);
+        leases.scheduleWithFixedDelay(this::takeOverExpired, renewEvery, leaseMs, TimeUnit.MILLISECONDS);
+        leases.scheduleWithFixedDelay(this::expireFailed, 0, 1, TimeUnit.HOURS);
+    }
+
+    public IngestJob submitFile(Path path) {
+        IngestJob job = create("file", path.toString(), path.getFileName().toString());
+        dispatch(job.getId(), () -> ingestService.planFile(path));
+        // dispatch may already have failed it (queue full)
+        return jobs.findById(job.getId()).orElse(job);
+    }
+
+    public IngestJob submitRemote(String tokenUrl,
+            String clientId,
+            String clientSecret,
+            String scope,
+            String username,
+            String password,
+            String accountsUrl,
+            String transactionsUrl) {
+        // credentials live only in this closure; once the plan is staged they are not needed again
+        IngestJob job = create("remote", "remote-apis", "remote-apis");
+        dispatch(job.getId(), () -> ingestService.planFromApis(
+                tokenUrl, clientId, clientSecret, scope, username, password, accountsUrl, transactionsUrl));
+        return jobs.findById(job.getId()).orElse(job);
+    }
+
+    public Optional<IngestJob> get(String id) {
+        return jobs.findById(id);
+    }
+
+    public Optional<IngestJob> cancel(String id) {
+        Optional<IngestJob> found = jobs.findById(id);
+        found.ifPresent(job -> {
+            if (job.getStatus() == Status.FAILED) {
+                // nothing is running it, so clean up right here
+                discard(job.getId());
+                update(id, new Update().set("status", Status.CANCELLED).set("cancelRequested", true));
+            } else if (ACTIVE.contains(job.getStatus())) {
+                // the worker notices between batches
+                update(id, new Update().set("cancelRequested", true));
+            }
+        });
+        return found.flatMap(j -> jobs.findById(id));
+    }
+
+    public Optional<IngestJob> resume(String id) {
+        Optional<IngestJob> found = jobs.findById(id);
+        found.ifPresent(job -> {
+            if (job.getStatus() != Status.FAILED) {
+                throw new IllegalStateException("Only failed jobs can be resumed; job is " + job.getStatus());
+            }
+            if (!job.isStaged() && !"file".equals(job.getType())) {
+                throw new IllegalStateException("Job failed before its records were staged; submit a new remote ingest");
+            }
+            if (superseded(job)) {
+                throw new IllegalStateException("A newer ingest has already been committed; resuming this job would roll the data back");
+            }
+            update(id, new Update().set("status", Status.QUEUED).set("attempts", 0)
+                    .set("owner", instanceId).set("heartbeatAt", Instant.now()).unset("error"));
+            dispatch(id, null);
+        });
+        return found.flatMap(j -> jobs.findById(id));
+    }
+
+    // ---------- leases ----------
+
+    private void heartbeat() {
+        try {
+            mongoTemplate.updateMulti(
+                    Query.query(Criteria.where("owner").is(instanceId).and("status").in(ACTIVE)),
+                    new Update().set("heartbeatAt", Instant.now()), IngestJob.class);
+        } catch (RuntimeException ignored) {
+            // retried on the next tick; the lease is several ticks long
+        }
+    }
+
+    private void takeOverExpired() {
+        try {
+            Instant cutoff = Instant.now().minusMillis(leaseMs);
+            Query stale = Query.query(Criteria.where("status").in(ACTIVE).and("owner").ne(instanceId)
+                    .orOperator(Criteria.where("heartbeatAt").lt(cutoff),
+                            Criteria.where("heartbeatAt").exists(false).and("updatedAt").lt(cutoff)));
+            for (IngestJob job : mongoTemplate.find(stale, IngestJob.class)) {
+                if (claim(job)) dispatch(job.getId(), null);
+            }
+        } catch (RuntimeException ignored) {
+            // retried on the next tick
+        }
+    }
+
+    /** Atomically takes the job over unless someone renewed or claimed it since it was read. */
+    private boolean claim(IngestJob job) {
+        Criteria unchanged = Criteria.where("_id").is(job.getId()).and("status").in(ACTIVE)
+                .and("owner").is(job.getOwner()).and("heartbeatAt").is(job.getHeartbeatAt());
+        Instant now = Instant.now();
+        IngestJob claimed = mongoTemplate.findAndModify(Query.query(unchanged),
+                new Update().set("owner", instanceId).set("heartbeatAt", now).set("updatedAt", now),
+                IngestJob.class);
+        return claimed != null;
+    }
+
+    private void expireFailed() {
+        try {
+            Instant cutoff = Instant.now().minus(failedRetention);
+            Query expired = Query.query(Criteria.where("status").is(Status.FAILED).and("updatedAt").lt(cutoff));
+            for (IngestJob job : mongoTemplate.find(expired, IngestJob.class)) {
+                // conditional, so a resume that races the sweep wins
+                Query still = Query.query(Criteria.where("_id").is(job.getId()).and("status").is(Status.FAILED));
+                IngestJob retired = mongoTemplate.findAndModify(still, new Update()
+                        .set("status", Status.CANCELLED)
+                        .set("error", "Expired after " + failedRetention + " in FAILED")
+                        .set("updatedAt", Instant.now()), IngestJob.class);
+                if (retired != null) discard(job.getId());
+            }
+        } catch (RuntimeException ignored) {
+            // retried on the next tick
+        }
+    }
+
+    // ---------- worker ----------
+
+    private IngestJob create(String type, String source, String docId) {
+        Instant now = Instant.now();
+        return jobs.save(IngestJob.builder()
+                .type(type)
+                .source(source)
+                .docId(docId)
+                .status(Status.QUEUED)
+                .owner(instanceId)
+                .heartbeatAt(now)
+                .createdAt(now)
+                .updatedAt(now)
+                .build());
+    }
+
+    private void dispatch(String id, Callable<List<RecordChunk>> planner) {
+        try {
+            executor.execute(() -> run(id, planner));
+        } catch (RejectedExecutionException e) {
+            update(id, new Update().set("status", Status.FAILED).set("error", "Ingest queue is full"));
+        }
+    }
+
+    private void run(String id, Callable<List<RecordChunk>> planner) {
+        IngestJob job = jobs.findById(id).orElse(null);
+        if (job == null || !ACTIVE.contains(job.getStatus()) || !instanceId.equals(job.getOwner())) return;
+        if (job.isCancelRequested()) {
+            finishCancelled(id);
+            return;
+        }
+        job.setAttempts(job.getAttempts() + 1);
+        update(id, new Update().set("status", Status.RUNNING).set("attempts", job.getAttempts()));
+
+        try {
+            if (!job.isStaged()) stage(job, planner != null ? planner : replan(job));
+            else verifyWritten(job);
+
+            while (job.getChunksWritten() < job.getChunksPlanned()) {
+                IngestJob current = jobs.findById(id).orElse(null);
+                if (current == null || !instanceId.equals(current.getOwner())) {
+                    // lease lost (e.g. a long pause) and another instance took over
+                    return;
+                }
+                if (current.isCancelRequested()) {
+                    finishCancelled(id);
+                    return;
+                }
+                int from = job.getChunksWritten();
+                List<StagedChunk> batch = stagedChunks.findByJobIdAndPosGreaterThanEqualOrderByPosAsc(
+                        id, from, PageRequest.of(0, batchSize));
+                if (batch.isEmpty()) {
+                    throw new IllegalStateException("Staged chunks missing from position " + from);
+                }
+
+                String source = "file".equals(job.getType()) ? "json" : "apis";
+                var chunks = ingestService.embedBatch(batch, job.getDocId(), source, id);
+                job.setChunksEmbedded(from + chunks.size());
+                update(id, new Update().set("chunksEmbedded", job.getChunksEmbedded()));
+
+                ingestService.write(chunks);
+                job.setChunksWritten(from + chunks.size());
+                update(id, new Update().set("chunksWritten", job.getChunksWritten()));
+            }
+
+            if (cancelRequested(id)) {
+                finishCancelled(id);
+                return;
+            }
+            if (superseded(job)) {
+                retire(id, SUPERSEDED);
+                return;
+            }
+            // keep whatever may still commit after this job: anything running, and newer failed jobs
+            List<String> keep = new ArrayList<>();
+            List<String> older = new ArrayList<>();
+            for (IngestJob other : jobs.findByStatusIn(EnumSet.of(Status.QUEUED, Status.RUNNING, Status.FAILED))) {
+                if (other.getId().equals(id)) continue;
+                boolean olderFailed = other.getStatus() == Status.FAILED
+                        && other.getCreatedAt() != null && other.getCreatedAt().isBefore(job.getCreatedAt());
+                (olderFailed ? older : keep).add(other.getId());
+            }
+            ingestService.commit(id, keep);
+            stagedChunks.deleteByJobId(id);
+            update(id, new Update().set("status", Status.SUCCEEDED).unset("error"));
+            localIndex.invalidate();
+            for (String stale : older) retire(stale, SUPERSEDED);
+        } catch (Exception e) {
+            if (Thread.currentThread().isInterrupted() || executor.isShutdown()) {
+                // shutting down: leave it RUNNING for recover()
+                return;
+            }
+            boolean resumable = job.isStaged() || planner != null || "file".equals(job.getType());
+            boolean retry = resumable && job.getAttempts() < maxAttempts;
+            update(id, new Update()
+                    .set("status", retry ? Status.QUEUED : Status.FAILED)
+                    .set("error", String.valueOf(e.getMessage())));
+            if (retry) dispatch(id, planner);
+        }
+    }
+
+    private void stage(IngestJob job, Callable<List<RecordChunk>> planner) throws Exception {
+        List<RecordChunk> plan = planner.call();
+
+        stagedChunks.deleteByJobId(job.getId());
+        List<StagedChunk> rows = new ArrayList<>(plan.size());
+        int records = 0;
+        long tokens = 0;
+        for (int i = 0; i < plan.size(); i++) {
+            RecordChunk c = plan.get(i);
+            records += c.records();
+            tokens += c.tokens();
+            rows.add(StagedChunk.builder()
+                    .jobId(job.getId())
+                    .pos(i)
+                    .section(c.section())
+                    .period(c.period())
+                    .text(c.text())
+                    .records(c.records())
+                    .tokens(c.tokens())
+                    .build());
+        }
+        stagedChunks.saveAll(rows);
+
+        job.setStaged(true);
+        job.setRecordsParsed(records);
+        job.setChunksPlanned(rows.size());
+        job.setTokensPlanned(tokens);
+        job.setChunksEmbedded(0);
+        job.setChunksWritten(0);
+        update(job.getId(), new Update()
+                .set("staged", true)
+                .set("recordsParsed", records)
+                .set("chunksPlanned", rows.size())
+                .set("tokensPlanned", tokens)
+                .set("chunksEmbedded", 0)
+                .set("chunksWritten", 0));
+    }
+
+    /** The resume point is only trusted if the chunks it counts are really there. */
+    private void verifyWritten(IngestJob job) {
+        if (job.getChunksWritten() == 0) return;
+        long present = ingestService.countWritten(job.getId());
+        if (present == job.getChunksWritten()) return;
+        // ids are deterministic, so starting over overwrites whatever survived
+        job.setChunksEmbedded(0);
+        job.setChunksWritten(0);
+        update(job.getId(), new Update().set("chunksEmbedded", 0).set("chunksWritten", 0));
+    }
+
+    private Callable<List<RecordChunk>> replan(IngestJob job) {
+        if ("file".equals(job.getType())) {
+            Path path = Path.of(job.getSource());
+            return () -> ingestService.planFile(path);
+        }
+        return () -> {
+            throw new IllegalStateException("Job was interrupted before its records were staged; submit a new remote ingest");
+        };
+    }
+
+    /** Whether a job created after this one has already committed; committing this one would roll data back. */
+    private boolean superseded(IngestJob job) {
+        if (job.getCreatedAt() == null) return false;
+        return mongoTemplate.exists(Query.query(Criteria.where("status").is(Status.SUCCEEDED)
+                .and("createdAt").gt(job.getCreatedAt())
+                .and("_id").ne(job.getId())), IngestJob.class);
+    }
+
+    /** Cancels a job that can no longer commit and drops its staged plan and hidden chunks. */
+    private void retire(String id, String reason) {
+        discard(id);
+        update(id, new Update().set("status", Status.CANCELLED).set("error", reason));
+    }
+
+    private void finishCancelled(String id) {
+        discard(id);
+        update(id, new Update().set("status", Status.CANCELLED));
+    }
+
+    private void discard(String id) {
+        ingestService.discard(id);
+        stagedChunks.deleteByJobId(id);
+    }
+
+    private boolean cancelRequested(String id) {
+        return jobs.findById(id).map(IngestJob::isCancelRequested).orElse(true);
+    }
+
+    // field-level updates, so a concurrent cancel request is never overwritten by progress writes
+    private void update(String id, Update update) {
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(id)),
+                update.set("updatedAt", Instant.now()), IngestJob.class);
+    }
+}
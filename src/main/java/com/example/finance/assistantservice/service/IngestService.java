@@ -2,7 +2,9 @@
 package com.example.finance.assistantservice.service;
 
 import com.example.finance.assistantservice.model.Chunk;
+import com.example.finance.assistantservice.model.StagedChunk;
 import com.example.finance.assistantservice.repo.ChunkRepository;
+import com.example.finance.assistantservice.service.RecordChunker.RecordChunk;
 import com.example.finance.assistantservice.webdto.AccountDto;
 import com.example.finance.assistantservice.webdto.TokenResponse;
 import com.example.finance.assistantservice.webdto.TransactionDto;
@@ -15,9 +17,14 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.Path;
 import java.util.*;
 
+/**
+ * Ingest pipeline steps: plan (parse + chunk), embed a batch, write it, commit.
+ * {@link IngestJobService} drives these steps and checkpoints between them.
+ */
 @Service
 @RequiredArgsConstructor
 public class IngestService {
@@ -25,49 +32,29 @@ public class IngestService {
     private final EmbeddingModel embeddingModel;
     private final ChunkRepository repo;
     private final BankApiClient bankApiClient;
+    private final RecordChunker recordChunker;
     private final ObjectMapper om = new ObjectMapper();
 
-    public int ingestFile(Path path) throws Exception {
+    public List<RecordChunk> planFile(Path path) throws IOException {
         JsonNode root = om.readTree(new File(path.toString()));
-        List<String> texts = new ArrayList<>();
-        flattenJson(root, texts);
 
-        // naive chunking ~600–900 chars per chunk
-        List<String> chunks = chunk(texts, 800);
-
-        List<TextSegment> segments = chunks.stream()
-                .map(TextSegment::from)
-                .toList();
-
-        List<Embedding> embs = embeddingModel.embedAll(segments).content();
-
-        List<Chunk> toSave = new ArrayList<>();
-        for (int i = 0; i < chunks.size(); i++) {
-            toSave.add(Chunk.builder()
-                    .docId(path.getFileName().toString())
-                    .text(chunks.get(i))
-                    .embedding(toList(embs.get(i)))
-                    .metadata(Map.of("source", "json", "pos", i))
-                    .build());
-        }
-        repo.deleteAll(); // clean slate for demo
-        repo.saveAll(toSave);
-        return toSave.size();
+        // one canonical line per record, packed per section under a token budget
+        return recordChunker.chunkExport(root);
     }
 
     /**
-     * Ingest data by calling remote APIs: token -> accounts -> transactions.
+     * Fetch data by calling remote APIs: token -> accounts -> transactions.
      * The endpoints and client info are passed in, so controller can bind from
      * config/request.
      */
-    public int ingestFromApis(String tokenUrl,
+    public List<RecordChunk> planFromApis(String tokenUrl,
             String clientId,
             String clientSecret,
             String scope,
             String username,
             String password,
             String accountsUrl,
-            String transactionsUrl) throws Exception {
+            String transactionsUrl) {
 
         TokenResponse token = bankApiClient.fetchToken(tokenUrl, clientId, clientSecret, username, password, scope);
         String accessToken = token.accessToken();
@@ -75,73 +62,63 @@ public class IngestService {
         List<AccountDto> accounts = bankApiClient.fetchAccounts(accountsUrl, accessToken);
         List<TransactionDto> txns = bankApiClient.fetchTransactions(transactionsUrl, accessToken);
 
-        // Build meaningful text for RAG: include normalized amounts and ISO dates
-        List<String> docs = new ArrayList<>();
-        for (AccountDto a : accounts) {
-            docs.add(String.format("Account %s (%s) at %s, balance: %s cents, currency: %s, created: %s",
-                    a.id(), a.name(), a.institution(), a.balanceCents(), a.currency(),
-                    a.createdAt() != null ? a.createdAt() : "unknown"));
-        }
-        for (TransactionDto t : txns) {
-            docs.add(String.format("Transaction: %s spent %s cents %s on %s (account %s) note: %s",
-                    t.merchant() != null ? t.merchant() : "unknown-merchant",
-                    t.amountCents() != null ? t.amountCents() : 0,
-                    t.currency() != null ? t.currency() : "USD",
-                    t.occurredAt() != null ? t.occurredAt().toLocalDate() : "unknown-date",
-                    t.accountId(),
-                    t.note() != null ? t.note() : ""));
-        }
+        return recordChunker.chunkRecords(accounts, txns);
+    }
+
+    public List<Chunk> embedBatch(List<StagedChunk> batch, String docId, String source, String jobId) {
+        List<TextSegment> segments = batch.stream()
+                .map(c -> TextSegment.from(c.getText()))
+                .toList();
 
-        List<String> chunks = chunk(docs, 800);
-        List<TextSegment> segments = chunks.stream().map(TextSegment::from).toList();
         List<Embedding> embs = embeddingModel.embedAll(segments).content();
 
-        List<Chunk> toSave = new ArrayList<>();
-        for (int i = 0; i < chunks.size(); i++) {
-            toSave.add(Chunk.builder()
-                    .docId("remote-apis")
-                    .text(chunks.get(i))
+        List<Chunk> out = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            StagedChunk c = batch.get(i);
+            Map<String, Object> metadata = new HashMap<>();
+            metadata.put("source", source);
+            metadata.put("pos", c.getPos());
+            metadata.put("section", c.getSection());
+            if (c.getPeriod() != null) metadata.put("period", c.getPeriod());
+            metadata.put("records", c.getRecords());
+            metadata.put("tokens", c.getTokens());
+            metadata.put("jobId", jobId);
+            // hidden from search until the job commits
+            metadata.put("committed", false);
+            out.add(Chunk.builder()
+                    // deterministic id: re-running a half-written batch overwrites instead of duplicating
+                    .id(jobId + ":" + c.getPos())
+                    .docId(docId)
+                    .text(c.getText())
                     .embedding(toList(embs.get(i)))
-                    .metadata(Map.of("source", "apis", "pos", i))
+                    .embeddingF32(LocalChunkIndex.toF32(embs.get(i).vector()))
+                    .metadata(metadata)
                     .build());
         }
-        repo.deleteAll();
-        repo.saveAll(toSave);
-        return toSave.size();
+        return out;
     }
 
-    private static void flattenJson(JsonNode node, List<String> out) {
-        if (node.isTextual()) {
-            String s = node.asText().trim();
-            if (!s.isEmpty()) out.add(s);
-        } else if (node.isNumber()) {
-            // Include numeric values, especially important for amounts
-            out.add(node.asText());
-        } else if (node.isContainerNode()) {
-            node.elements().forEachRemaining(child -> flattenJson(child, out));
-            node.fields().forEachRemaining(e -> flattenJson(e.getValue(), out));
-        } // booleans ignored
+    public void write(List<Chunk> chunks) {
+        repo.saveAll(chunks);
     }
 
-    private static List<String> chunk(List<String> texts, int maxChars) {
-        List<String> chunks = new ArrayList<>();
-        StringBuilder buf = new StringBuilder();
-        for (String t : texts) {
-            if (buf.length() + t.length() + 1 > maxChars) {
-                if (buf.length() > 0) { chunks.add(buf.toString()); buf.setLength(0); }
-            }
-            if (t.length() >= maxChars) {
-                // hard-split long strings
-                for (int i = 0; i < t.length(); i += maxChars) {
-                    chunks.add(t.substring(i, Math.min(i + maxChars, t.length())));
-                }
-            } else {
-                if (buf.length() > 0) buf.append(" ");
-                buf.append(t);
-            }
-        }
-        if (buf.length() > 0) chunks.add(buf.toString());
-        return chunks;
+    public long countWritten(String jobId) {
+        return repo.countByJobId(jobId);
+    }
+
+    /**
+     * Replace semantics: publish this job's chunks, then drop every chunk not produced by
+     * this job or by one of {@code keepJobIds} (those stay unpublished until they commit).
+     */
+    public void commit(String jobId, Collection<String> keepJobIds) {
+        repo.markCommitted(jobId);
+        Set<String> keep = new HashSet<>(keepJobIds);
+        keep.add(jobId);
+        repo.deleteByJobIdNotIn(keep);
+    }
+
+    public void discard(String jobId) {
+        repo.deleteByJobId(jobId);
     }
 
     private static List<Double> toList(Embedding e) {
@@ -0,0 +1,294 @@
+package com.example.finance.assistantservice.service;
+
+import com.example.finance.assistantservice.model.Chunk;
+import com.example.finance.assistantservice.model.IngestJob;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * In-process copy of the {@code chunks} collection used by the non-Atlas search path.
+ * Vectors are stored unit-normalized so scoring is a plain dot product. The index is
+ * trusted ("live") while {@link ChunkChangeStreamListener} keeps it in sync with Mongo;
+ * otherwise it is only used for two-stage or sharded search and loaded on demand. Such a
+ * snapshot is reloaded after a local ingest, and at most every {@code snapshotCheckMs} it
+ * is compared with the latest committed ingest job, so replicas that did not run the
+ * ingest pick up new data as well.
+ *
+ * Two-stage mode keeps just a renormalized prefix of each embedding resident
+ * (Matryoshka-style, e.g. 256 of 1536 dims), without text or metadata. The best
+ * {@code candidates} by prefix score are then rescored exactly: their full vectors are
+ * fetched from Mongo as compact float32 binary ({@code embeddingF32}, 6 KB for 1536 dims)
+ * together with text and metadata. Chunks written before that field existed fall back
+ * to the {@code embedding} array.
+ *
+ * In sharded mode ({@code app.shard.count > 1}) the index only holds chunks whose id
+ * hashes to {@code app.shard.id}; {@link ScatterGatherSearchService} queries all shards.
+ */
+@Component
+@RequiredArgsConstructor
+public class LocalChunkIndex {
+
+    private final MongoTemplate mongoTemplate;
+    private final SearchTuning searchTuning;
+
+    @Value("${app.vector.twoStage.enabled:false}")
+    private boolean twoStage;
+
+    @Value("${app.vector.twoStage.firstStageDims:256}")
+    private int firstStageDims;
+
+    // 0 = rescore with the full stored vector
+    @Value("${app.vector.twoStage.rescoreDims:0}")
+    private int rescoreDims;
+
+    @Value("${app.vector.twoStage.candidates:100}")
+    private int candidates;
+
+    @Value("${app.shard.id:0}")
+    private int shardId;
+
+    @Value("${app.shard.count:1}")
+    private int shardCount;
+
+    @Value("${app.vector.snapshotCheckMs:5000}")
+    private long snapshotCheckMs;
+
+    private volatile Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile boolean live;
+    private volatile boolean loaded;
+    private volatile String loadedVersion;
+    private volatile long checkedAt;
+
+    record Entry(String id, String text, Map<String, Object> metadata, float[] unit) {}
+
+    /** Full reload from Mongo; the new map is swapped in so readers never see a half-built index. */
+    public synchronized int rebuild() {
+        // read before the scan: a commit racing it shows up as a newer version on the next check
+        String version = dataVersion();
+        Map<String, Entry> fresh = new ConcurrentHashMap<>();
+        Query committed = Query.query(Criteria.where("metadata.committed").ne(false));
+        committed.fields().exclude("embeddingF32");
+        try (Stream<Chunk> all = mongoTemplate.stream(committed, Chunk.class)) {
+            all.forEach(c -> {
+                Entry e = toEntry(c);
+                if (e != null) fresh.put(e.id(), e);
+            });
+        }
+        entries = fresh;
+        loadedVersion = version;
+        checkedAt = System.currentTimeMillis();
+        loaded = true;
+        return fresh.size();
+    }
+
+    /** Drops an on-demand snapshot after a local ingest; a no-op while the change stream keeps it current. */
+    public void invalidate() {
+        if (!live) loaded = false;
+    }
+
+    public void upsert(Chunk c) {
+        Entry e = toEntry(c);
+        if (e != null) entries.put(e.id(), e);
+        else if (c.getId() != null) entries.remove(c.getId());
+    }
+
+    public void remove(String id) {
+        if (id != null) entries.remove(id);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public boolean isLive() {
+        return live;
+    }
+
+    public void markLive(boolean live) {
+        this.live = live;
+    }
+
+    /** Whether searches should be served from memory rather than by scanning Mongo. */
+    public boolean isResident() {
+        return live || twoStage || shardCount > 1;
+    }
+
+    public int shardId() {
+        return shardId;
+    }
+
+    public int shardCount() {
+        return shardCount;
+    }
+
+    /** Stable across JVMs: String.hashCode is specified, so every node agrees on placement. */
+    public boolean owns(String id) {
+        return shardCount <= 1 || Math.floorMod(id.hashCode(), shardCount) == shardId;
+    }
+
+    public List<VectorSearchService.SearchHit> search(float[] query, int k) {
+        return search(query, k, shortlist(k));
+    }
+
+    /** Two-stage shortlist used for k: the tuned value, else {@code candidates}. */
+    public int shortlist(int k) {
+        return searchTuning.rescoreCandidates(k, Math.max(candidates, k));
+    }
+
+    /** {@code shortlist} is the two-stage search effort; ignored when scoring is exact. */
+    public List<VectorSearchService.SearchHit> search(float[] query, int k, int shortlist) {
+        if (!live) refreshIfStale();
+        if (!twoStage) return top(prefix(query, query.length), k);
+
+        // stage 1: truncated prefix, stage 2: exact rescore of the survivors
+        List<VectorSearchService.SearchHit> stage1 = top(prefix(query, firstStageDims), Math.max(shortlist, k));
+        return rescore(query, stage1, k);
+    }
+
+    public boolean isTwoStage() {
+        return twoStage;
+    }
+
+    public int firstStageDims() {
+        return firstStageDims;
+    }
+
+    /** Committed ingest the on-demand snapshot was built from; null while the change stream keeps it live. */
+    public String snapshotVersion() {
+        return live ? null : loadedVersion;
+    }
+
+    private void refreshIfStale() {
+        if (loaded && System.currentTimeMillis() - checkedAt < snapshotCheckMs) return;
+        synchronized (this) {
+            if (loaded && System.currentTimeMillis() - checkedAt < snapshotCheckMs) return;
+            if (loaded && Objects.equals(dataVersion(), loadedVersion)) {
+                checkedAt = System.currentTimeMillis();
+                return;
+            }
+            rebuild();
+        }
+    }
+
+    /** Id and time of the newest committed ingest; every commit replaces the searchable data. */
+    private String dataVersion() {
+        Query q = Query.query(Criteria.where("status").is(IngestJob.Status.SUCCEEDED))
+                .with(Sort.by(Sort.Direction.DESC, "updatedAt"))
+                .limit(1);
+        q.fields().include("updatedAt");
+        IngestJob last = mongoTemplate.findOne(q, IngestJob.class);
+        return last == null ? "" : last.getId() + "@" + last.getUpdatedAt();
+    }
+
+    private List<VectorSearchService.SearchHit> top(float[] q, int k) {
+        // min-heap of the current best k
+        PriorityQueue<VectorSearchService.SearchHit> top =
+                new PriorityQueue<>(Comparator.comparingDouble(VectorSearchService.SearchHit::score));
+        for (Entry e : entries.values()) {
+            if (e.unit().length != q.length) continue;
+            double score = dot(q, e.unit());
+            if (top.size() < k) {
+                top.add(new VectorSearchService.SearchHit(e.id(), e.text(), score, e.metadata()));
+            } else if (score > top.peek().score()) {
+                top.poll();
+                top.add(new VectorSearchService.SearchHit(e.id(), e.text(), score, e.metadata()));
+            }
+        }
+        List<VectorSearchService.SearchHit> hits = new ArrayList<>(top);
+        hits.sort(Comparator.comparingDouble(VectorSearchService.SearchHit::score).reversed());
+        return hits;
+    }
+
+    private List<VectorSearchService.SearchHit> rescore(float[] query, List<VectorSearchService.SearchHit> shortlist, int k) {
+        if (shortlist.isEmpty()) return shortlist;
+        List<String> ids = shortlist.stream().map(VectorSearchService.SearchHit::id).toList();
+        int dims = rescoreDims > 0 ? Math.min(rescoreDims, query.length) : query.length;
+        float[] fullQuery = prefix(query, dims);
+        List<VectorSearchService.SearchHit> rescored = new ArrayList<>(shortlist.size());
+
+        Query q = Query.query(Criteria.where("_id").in(ids));
+        q.fields().include("text").include("metadata").include("embeddingF32");
+        List<String> legacy = new ArrayList<>();
+        for (Chunk c : mongoTemplate.find(q, Chunk.class)) {
+            if (c.getEmbeddingF32() == null) {
+                legacy.add(c.getId());
+            } else if (c.getEmbeddingF32().length >= dims * Float.BYTES) {
+                rescored.add(hit(c, dot(fullQuery, prefix(fromF32(c.getEmbeddingF32(), dims), dims))));
+            }
+        }
+        if (!legacy.isEmpty()) {
+            // chunks written before embeddingF32: decode the double array instead
+            Query old = Query.query(Criteria.where("_id").in(legacy));
+            old.fields().include("text").include("metadata").include("embedding");
+            for (Chunk c : mongoTemplate.find(old, Chunk.class)) {
+                if (c.getEmbedding() == null || c.getEmbedding().size() < dims) continue;
+                rescored.add(hit(c, dot(fullQuery, prefix(toFloats(c.getEmbedding()), dims))));
+            }
+        }
+        rescored.sort(Comparator.comparingDouble(VectorSearchService.SearchHit::score).reversed());
+        return rescored.size() > k ? new ArrayList<>(rescored.subList(0, k)) : rescored;
+    }
+
+    private static VectorSearchService.SearchHit hit(Chunk c, double score) {
+        return new VectorSearchService.SearchHit(c.getId(), c.getText(), score, c.getMetadata());
+    }
+
+    private Entry toEntry(Chunk c) {
+        if (c.getId() == null || c.getEmbedding() == null || c.getEmbedding().isEmpty()) return null;
+        if (!owns(c.getId())) return null;
+        // an ingest still in progress (or failed) stays invisible until its commit flips the flag
+        if (c.getMetadata() != null && Boolean.FALSE.equals(c.getMetadata().get("committed"))) return null;
+        float[] v = toFloats(c.getEmbedding());
+        // two-stage hits get text and metadata from the rescore fetch, so only the prefix stays resident
+        if (twoStage) return new Entry(c.getId(), null, null, prefix(v, firstStageDims));
+        return new Entry(c.getId(), c.getText(), c.getMetadata(), prefix(v, v.length));
+    }
+
+    /** Little-endian float32, the compact copy the rescore reads instead of the double array. */
+    static byte[] toF32(float[] v) {
+        ByteBuffer buf = ByteBuffer.allocate(v.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buf.asFloatBuffer().put(v);
+        return buf.array();
+    }
+
+    /** First {@code dims} floats of a {@link #toF32} encoding. */
+    static float[] fromF32(byte[] bytes, int dims) {
+        float[] v = new float[Math.min(dims, bytes.length / Float.BYTES)];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(v);
+        return v;
+    }
+
+    private static float[] toFloats(List<Double> list) {
+        float[] v = new float[list.size()];
+        for (int i = 0; i < v.length; i++) v[i] = list.get(i).floatValue();
+        return v;
+    }
+
+    /** First {@code dims} components, renormalized to unit length. */
+    static float[] prefix(float[] v, int dims) {
+        int n = Math.min(dims, v.length);
+        double norm = 0;
+        for (int i = 0; i < n; i++) norm += v[i] * v[i];
+        norm = Math.sqrt(norm) + 1e-12;
+        float[] out = new float[n];
+        for (int i = 0; i < n; i++) out[i] = (float) (v[i] / norm);
+        return out;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double s = 0;
+        for (int i = 0; i < a.length; i++) s += a[i] * b[i];
+        return s;
+    }
+}
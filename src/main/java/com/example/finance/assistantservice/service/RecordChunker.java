@@ -0,0 +1,333 @@
+package com.example.finance.assistantservice.service;
+
+import com.example.finance.assistantservice.webdto.AccountDto;
+import com.example.finance.assistantservice.webdto.TransactionDto;
+import com.fasterxml.jackson.databind.JsonNode;
+import dev.langchain4j.model.Tokenizer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Schema-aware chunker: renders every record of the export (or of the remote
+ * API DTOs) as one compact canonical line and packs lines of the same section
+ * into chunks bounded by embedding tokens. Transactions are grouped by month,
+ * so a chunk never mixes unrelated sections or splits a record in half.
+ */
+@Component
+@RequiredArgsConstructor
+public class RecordChunker {
+
+    private static final Pattern ISO_DATE = Pattern.compile("^\\d{4}-\\d{2}-\\d{2}.*");
+
+    // Amounts in cents whose key has no "Cents" suffix in the export
+    private static final Set<String> CENTS_FIELDS = Set.of("creditLimit", "minimumPayment", "overdraftLimit", "annualFee");
+
+    // Analytics KPIs whose "value" is an amount in cents; the others are ratios or month counts
+    private static final Set<String> CENTS_KPIS = Set.of("Net Worth", "Avg. Daily Spend (30d)");
+
+    private final Tokenizer tokenizer;
+
+    @Value("${app.chunking.maxTokens:256}")
+    private int maxTokens;
+
+    public record RecordChunk(String section, String period, String text, int records, int tokens) {}
+
+    // One transaction, whichever source it came from
+    private record Txn(String date, String merchant, Long amountCents, String currency,
+                       String category, String account, String note, String tags) {}
+
+    public List<RecordChunk> chunkExport(JsonNode root) {
+        Map<String, String> accountNames = namesById(root.path("accounts"));
+        List<RecordChunk> out = new ArrayList<>();
+
+        root.fields().forEachRemaining(e -> {
+            switch (e.getKey()) {
+                case "transactions" -> {
+                    JsonNode content = e.getValue().isArray() ? e.getValue() : e.getValue().at("/paged/content");
+                    List<Txn> txns = new ArrayList<>();
+                    content.forEach(t -> txns.add(new Txn(
+                            text(t, "occurredAt"),
+                            text(t, "merchant"),
+                            t.hasNonNull("amountCents") ? t.get("amountCents").asLong() : null,
+                            text(t, "currency"),
+                            text(t, "category"),
+                            accountNames.getOrDefault(text(t, "accountId"), text(t, "accountId")),
+                            text(t, "note"),
+                            joinScalars(t.path("tags")))));
+                    emitTransactions(txns, out);
+                }
+                case "budget" -> emitBudget(e.getValue(), out);
+                default -> emitSection(e.getKey(), e.getValue(), out);
+            }
+        });
+        return out;
+    }
+
+    public List<RecordChunk> chunkRecords(List<AccountDto> accounts, List<TransactionDto> txns) {
+        Map<String, String> accountNames = new HashMap<>();
+        List<String> accountLines = new ArrayList<>();
+        for (AccountDto a : accounts) {
+            if (a.id() != null && a.name() != null) accountNames.put(a.id(), a.name());
+            accountLines.add(String.format("%s: institution %s, type %s, balance %s %s, created %s",
+                    a.name(), a.institution(), a.type(),
+                    money(a.balanceCents()), a.currency() != null ? a.currency() : "USD",
+                    a.createdAt() != null ? a.createdAt().toLocalDate() : "unknown"));
+        }
+        List<RecordChunk> out = new ArrayList<>();
+        pack("accounts", null, "Accounts", accountLines, out);
+
+        List<Txn> mapped = new ArrayList<>();
+        for (TransactionDto t : txns) {
+            mapped.add(new Txn(
+                    t.occurredAt() != null ? t.occurredAt().toLocalDate().toString() : null,
+                    t.merchant(),
+                    t.amountCents(),
+                    t.currency(),
+                    t.category(),
+                    accountNames.getOrDefault(t.accountId(), t.accountId()),
+                    t.note(),
+                    null));
+        }
+        emitTransactions(mapped, out);
+        return out;
+    }
+
+    // ---------- sections ----------
+
+    private void emitTransactions(List<Txn> txns, List<RecordChunk> out) {
+        // month buckets, oldest first; undated records share one bucket at the end
+        TreeMap<String, List<Txn>> byMonth = new TreeMap<>(Comparator.nullsLast(Comparator.naturalOrder()));
+        for (Txn t : txns) {
+            String month = isDate(t.date()) ? t.date().substring(0, 7) : null;
+            byMonth.computeIfAbsent(month, m -> new ArrayList<>()).add(t);
+        }
+        byMonth.forEach((month, list) -> {
+            list.sort(Comparator.comparing(Txn::date, Comparator.nullsLast(Comparator.naturalOrder())));
+            List<String> lines = new ArrayList<>(list.size());
+            for (Txn t : list) lines.add(renderTxn(t));
+            pack("transactions", month, "Transactions " + (month != null ? month : "undated"), lines, out);
+        });
+    }
+
+    private static String renderTxn(Txn t) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(isDate(t.date()) ? t.date().substring(0, 10) : "unknown-date")
+                .append(' ').append(t.merchant() != null ? t.merchant() : "unknown-merchant")
+                .append(' ').append(money(t.amountCents()))
+                .append(' ').append(t.currency() != null ? t.currency() : "USD");
+        if (notBlank(t.category())) sb.append(' ').append(t.category());
+        if (notBlank(t.account())) sb.append(" (").append(t.account()).append(')');
+        if (notBlank(t.note())) sb.append(" note: ").append(t.note());
+        if (notBlank(t.tags())) sb.append(" tags: ").append(t.tags());
+        return sb.toString();
+    }
+
+    private void emitBudget(JsonNode budget, List<RecordChunk> out) {
+        Set<String> covered = new HashSet<>();
+        List<String> lines = new ArrayList<>();
+        for (JsonNode s : budget.path("summaries")) {
+            String month = text(s, "month");
+            covered.add(month);
+            StringBuilder sb = new StringBuilder(String.format("%s: income %s, expense %s, savingsRate %s",
+                    month, money(s, "incomeCents"), money(s, "expenseCents"), s.path("savingsRate").asText()));
+            if (s.path("categories").size() > 0) {
+                sb.append(" | actual/limit:");
+                String sep = " ";
+                for (JsonNode c : s.path("categories")) {
+                    sb.append(sep).append(text(c, "name")).append(' ')
+                            .append(money(c, "actualCents")).append('/').append(money(c, "limitCents"));
+                    sep = ", ";
+                }
+            }
+            lines.add(sb.toString());
+        }
+        // limits are repeated inside the summaries; only keep months the summaries don't cover
+        for (JsonNode l : budget.path("limits")) {
+            String month = text(l, "month");
+            if (covered.contains(month)) continue;
+            StringBuilder sb = new StringBuilder(month).append(": limits");
+            String sep = " ";
+            for (var it = l.path("limits").fields(); it.hasNext(); ) {
+                var e = it.next();
+                sb.append(sep).append(e.getKey()).append(' ').append(money(e.getValue().asLong()));
+                sep = ", ";
+            }
+            lines.add(sb.toString());
+        }
+        pack("budget", null, "Budget", lines, out);
+        budget.fields().forEachRemaining(e -> {
+            if (!e.getKey().equals("summaries") && !e.getKey().equals("limits")) {
+                emitSection("budget." + e.getKey(), e.getValue(), out);
+            }
+        });
+    }
+
+    private void emitSection(String section, JsonNode node, List<RecordChunk> out) {
+        if (node.isArray()) {
+            List<String> lines = new ArrayList<>();
+            node.forEach(r -> {
+                String line = r.isObject() ? renderRecord(r) : r.asText();
+                if (notBlank(line)) lines.add(line);
+            });
+            pack(section, null, header(section), lines, out);
+        } else if (node.isObject()) {
+            // scalars of an object form one record; nested containers become sub-sections
+            Map<String, JsonNode> scalars = new LinkedHashMap<>();
+            node.fields().forEachRemaining(e -> {
+                JsonNode v = e.getValue();
+                if (v.isArray() && v.size() > 0 && v.get(0).isContainerNode()) {
+                    emitSection(section + "." + e.getKey(), v, out);
+                } else if (v.isObject() && !isFlat(v)) {
+                    emitSection(section + "." + e.getKey(), v, out);
+                } else {
+                    scalars.put(e.getKey(), v);
+                }
+            });
+            if (!scalars.isEmpty()) {
+                String line = renderFields(scalars);
+                if (notBlank(line)) pack(section, null, header(section), List.of(line), out);
+            }
+        } else if (notBlank(node.asText())) {
+            pack(section, null, header(section), List.of(node.asText()), out);
+        }
+    }
+
+    // ---------- record rendering ----------
+
+    private static String renderRecord(JsonNode r) {
+        Map<String, JsonNode> fields = new LinkedHashMap<>();
+        r.fields().forEachRemaining(e -> fields.put(e.getKey(), e.getValue()));
+        return renderFields(fields);
+    }
+
+    /** "lead: key value, key value": ids dropped, cents in major units, timestamps as dates. */
+    private static String renderFields(Map<String, JsonNode> fields) {
+        String lead = null;
+        for (String k : List.of("name", "title", "filename", "message", "category", "month")) {
+            if (fields.containsKey(k) && notBlank(fields.get(k).asText())) { lead = k; break; }
+        }
+        boolean centsKpi = "name".equals(lead) && CENTS_KPIS.contains(fields.get(lead).asText());
+        StringBuilder sb = new StringBuilder();
+        if (lead != null) sb.append(fields.get(lead).asText());
+        String sep = lead != null ? ": " : "";
+        for (var e : fields.entrySet()) {
+            String key = e.getKey();
+            if (key.equals(lead) || key.equals("id") || key.endsWith("Id") || key.endsWith("Json")) continue;
+            boolean cents = key.endsWith("Cents") || CENTS_FIELDS.contains(key) || (centsKpi && key.equals("value"));
+            String value = cents && e.getValue().isNumber() ? money(e.getValue().decimalValue()) : renderValue(e.getValue());
+            if (value == null) continue;
+            sb.append(sep).append(key.endsWith("Cents") ? key.substring(0, key.length() - 5) : key)
+                    .append(' ').append(value);
+            sep = ", ";
+        }
+        return sb.toString();
+    }
+
+    private static String renderValue(JsonNode v) {
+        if (v == null || v.isNull() || v.isMissingNode()) return null;
+        if (v.isTextual()) {
+            String s = v.asText().trim();
+            if (s.isEmpty()) return null;
+            return isDate(s) && s.length() > 10 ? s.substring(0, 10) : s;
+        }
+        if (v.isArray()) {
+            String joined = joinScalars(v);
+            return notBlank(joined) ? joined : null;
+        }
+        if (v.isObject()) {
+            if (v.size() == 0) return null;
+            String inner = renderRecord(v);
+            return notBlank(inner) ? "(" + inner + ")" : null;
+        }
+        return v.asText();
+    }
+
+    // ---------- packing ----------
+
+    /** Packs whole lines under the token budget, repeating the header on every chunk. */
+    private void pack(String section, String period, String header, List<String> lines, List<RecordChunk> out) {
+        if (lines.isEmpty()) return;
+        int headerTokens = tokenizer.estimateTokenCountInText(header) + 1;
+        StringBuilder buf = new StringBuilder(header);
+        int tokens = headerTokens;
+        int records = 0;
+        for (String line : lines) {
+            int lineTokens = tokenizer.estimateTokenCountInText(line) + 1;
+            // an oversized record still goes out whole, on its own
+            if (records > 0 && tokens + lineTokens > maxTokens) {
+                out.add(new RecordChunk(section, period, buf.toString(), records, tokens));
+                buf.setLength(0);
+                buf.append(header);
+                tokens = headerTokens;
+                records = 0;
+            }
+            buf.append('\n').append(line);
+            tokens += lineTokens;
+            records++;
+        }
+        out.add(new RecordChunk(section, period, buf.toString(), records, tokens));
+    }
+
+    // ---------- helpers ----------
+
+    private static Map<String, String> namesById(JsonNode array) {
+        Map<String, String> names = new HashMap<>();
+        for (JsonNode n : array) {
+            if (n.hasNonNull("id") && n.hasNonNull("name")) names.put(n.get("id").asText(), n.get("name").asText());
+        }
+        return names;
+    }
+
+    private static String header(String section) {
+        String[] parts = section.split("\\.");
+        StringBuilder sb = new StringBuilder();
+        for (String p : parts) {
+            if (sb.length() > 0) sb.append(' ');
+            sb.append(Character.toUpperCase(p.charAt(0))).append(p.substring(1));
+        }
+        return sb.toString();
+    }
+
+    private static boolean isFlat(JsonNode obj) {
+        for (JsonNode v : obj) if (v.isContainerNode() && v.size() > 0) return false;
+        return true;
+    }
+
+    private static String joinScalars(JsonNode array) {
+        if (!array.isArray() || array.size() == 0) return null;
+        StringJoiner j = new StringJoiner(",");
+        array.forEach(v -> { if (v.isValueNode() && notBlank(v.asText())) j.add(v.asText()); });
+        return j.toString();
+    }
+
+    private static String text(JsonNode n, String field) {
+        JsonNode v = n.get(field);
+        return v == null || v.isNull() ? null : v.asText();
+    }
+
+    private static String money(JsonNode n, String field) {
+        return money(n.hasNonNull(field) ? n.get(field).asLong() : null);
+    }
+
+    private static String money(Long cents) {
+        return cents == null ? "0.00" : BigDecimal.valueOf(cents, 2).toPlainString();
+    }
+
+    private static String money(BigDecimal cents) {
+        return cents.movePointLeft(2).setScale(2, RoundingMode.HALF_UP).toPlainString();
+    }
+
+    private static boolean isDate(String s) {
+        return s != null && ISO_DATE.matcher(s).matches();
+    }
+
+    private static boolean notBlank(String s) {
+        return s != null && !s.isBlank();
+    }
+}
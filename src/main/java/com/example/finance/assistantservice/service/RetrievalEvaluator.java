@@ -0,0 +1,272 @@
+package com.example.finance.assistantservice.service;
+
+import com.example.finance.assistantservice.model.Chunk;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Measures recall@k and latency of the configured search path against exact brute-force
+ * search, sweeping its search-effort knob: Atlas {@code numCandidates}, or the two-stage
+ * rescore shortlist for the in-process index. The cheapest setting that reaches the target
+ * recall for each k can be written to {@link SearchTuning}.
+ *
+ * In two-stage mode it also reports what the resident prefix costs in recall: for each
+ * {@code firstStageDims} in {@code app.eval.dimsSweep} the prefix shortlist is rescored
+ * at full width and compared with exact top-k. Changing the prefix width needs a restart,
+ * so that part is only reported, never applied.
+ *
+ * Queries are synthesized from the export's transactions with a fixed seed, so runs over
+ * the same data are comparable.
+ */
+@Service
+@RequiredArgsConstructor
+public class RetrievalEvaluator {
+
+    private static final int ATLAS_MAX_CANDIDATES = 10_000;
+
+    private final EmbeddingModel embeddingModel;
+    private final MongoTemplate mongoTemplate;
+    private final VectorSearchService vectorSearchService;
+    private final LocalChunkIndex localIndex;
+    private final SearchTuning searchTuning;
+    private final ObjectMapper om = new ObjectMapper();
+
+    @Value("${app.eval.sweep:10,20,50,100,200,400,800,1600}")
+    private List<Integer> sweep;
+
+    @Value("${app.eval.dimsSweep:64,128,256,512,768,1024}")
+    private List<Integer> dimsSweep;
+
+    @Value("${app.eval.seed:42}")
+    private long seed;
+
+    public record Point(int effort, double recall, double p50Ms, double p95Ms) {}
+    public record KResult(int k, Integer chosen, boolean targetMet, List<Point> points) {}
+    public record DimsPoint(int dims, int k, int shortlist, double recall) {}
+    public record Report(String mode, int queries, int chunks, double targetRecall, boolean applied,
+                         List<KResult> results, List<DimsPoint> firstStage, String note) {}
+
+    public Report tune(Path export, int queryCount, List<Integer> ks, double targetRecall, boolean apply) throws IOException {
+        String mode = vectorSearchService.usesAtlas() ? "atlas" : localIndex.isTwoStage() ? "twoStage" : "exact";
+        if (mode.equals("exact")) {
+            return new Report(mode, 0, 0, targetRecall, false, List.of(), List.of(),
+                    "In-process search is exact; there is no search effort to tune");
+        }
+        if (!mode.equals("atlas") && localIndex.shardCount() > 1) {
+            return new Report(mode, 0, 0, targetRecall, false, List.of(), List.of(),
+                    "This node only indexes one shard; run the evaluation on an unsharded node");
+        }
+
+        List<String> queries = syntheticQueries(export, Math.max(1, queryCount));
+        List<float[]> vectors = embeddingModel.embedAll(queries.stream().map(TextSegment::from).toList())
+                .content().stream().map(e -> LocalChunkIndex.prefix(e.vector(), e.vector().length)).toList();
+
+        int maxK = ks.stream().mapToInt(Integer::intValue).max().orElse(5);
+        Corpus corpus = loadCorpus();
+        List<List<String>> truth = new ArrayList<>(vectors.size());
+        for (float[] q : vectors) truth.add(corpus.exactTop(q, maxK));
+
+        List<KResult> results = new ArrayList<>();
+        Map<Integer, Integer> chosen = new TreeMap<>();
+        for (int k : ks) {
+            List<Point> points = new ArrayList<>();
+            Integer pick = null;
+            for (int effort : efforts(k, mode, corpus.size())) {
+                Point p = measure(mode, vectors, truth, k, effort);
+                points.add(p);
+                if (pick == null && p.recall() >= targetRecall) pick = effort;
+            }
+            boolean met = pick != null;
+            if (!met && !points.isEmpty()) pick = points.get(points.size() - 1).effort();
+            if (pick != null) chosen.put(k, pick);
+            results.add(new KResult(k, pick, met, points));
+        }
+
+        if (apply && !chosen.isEmpty()) {
+            if (mode.equals("atlas")) searchTuning.updateNumCandidates(chosen);
+            else searchTuning.updateRescoreCandidates(chosen);
+        }
+
+        List<DimsPoint> firstStage = List.of();
+        String note = null;
+        if (mode.equals("twoStage")) {
+            firstStage = compareDims(corpus, vectors, truth, ks);
+            Integer smallest = smallestDims(firstStage, targetRecall);
+            note = smallest == null
+                    ? "No firstStageDims in the sweep reaches the target recall at the current shortlists"
+                    : "firstStageDims " + smallest + " is the smallest that reaches the target recall at the current"
+                            + " shortlists (configured: " + localIndex.firstStageDims() + ")";
+        }
+        return new Report(mode, queries.size(), corpus.size(), targetRecall, apply && !chosen.isEmpty(),
+                results, firstStage, note);
+    }
+
+    /** Recall of prefix shortlist + full-width rescore vs exact top-k, per prefix width and k. */
+    private List<DimsPoint> compareDims(Corpus corpus, List<float[]> queries, List<List<String>> truth, List<Integer> ks) {
+        if (corpus.size() == 0) return List.of();
+        int full = corpus.vectors().get(0).length;
+        TreeSet<Integer> widths = new TreeSet<>();
+        for (int d : dimsSweep) if (d > 0 && d <= full) widths.add(d);
+        widths.add(Math.min(localIndex.firstStageDims(), full));
+
+        List<DimsPoint> out = new ArrayList<>();
+        for (int dims : widths) {
+            List<float[]> prefixes = new ArrayList<>(corpus.size());
+            for (float[] v : corpus.vectors()) prefixes.add(LocalChunkIndex.prefix(v, dims));
+            for (int k : ks) {
+                int shortlist = localIndex.shortlist(k);
+                double recallSum = 0;
+                for (int i = 0; i < queries.size(); i++) {
+                    float[] q = queries.get(i);
+                    List<Integer> stage1 = Corpus.top(LocalChunkIndex.prefix(q, dims), prefixes, null, shortlist);
+                    List<Integer> stage2 = Corpus.top(q, corpus.vectors(), stage1, k);
+                    recallSum += recall(truth.get(i), k, stage2.stream().map(corpus.ids()::get).toList());
+                }
+                out.add(new DimsPoint(dims, k, shortlist, recallSum / queries.size()));
+            }
+        }
+        return out;
+    }
+
+    private static Integer smallestDims(List<DimsPoint> points, double targetRecall) {
+        Map<Integer, Boolean> meets = new TreeMap<>();
+        for (DimsPoint p : points) meets.merge(p.dims(), p.recall() >= targetRecall, Boolean::logicalAnd);
+        for (var e : meets.entrySet()) if (e.getValue()) return e.getKey();
+        return null;
+    }
+
+    private Point measure(String mode, List<float[]> vectors, List<List<String>> truth, int k, int effort) {
+        search(mode, vectors.get(0), k, effort); // warm-up, not timed
+
+        double recallSum = 0;
+        double[] latencies = new double[vectors.size()];
+        for (int i = 0; i < vectors.size(); i++) {
+            long t0 = System.nanoTime();
+            List<VectorSearchService.SearchHit> hits = search(mode, vectors.get(i), k, effort);
+            latencies[i] = (System.nanoTime() - t0) / 1_000_000.0;
+
+            recallSum += recall(truth.get(i), k, hits.stream().map(VectorSearchService.SearchHit::id).toList());
+        }
+        Arrays.sort(latencies);
+        return new Point(effort, recallSum / vectors.size(), percentile(latencies, 0.50), percentile(latencies, 0.95));
+    }
+
+    private static double recall(List<String> truth, int k, List<String> got) {
+        List<String> expected = truth.subList(0, Math.min(k, truth.size()));
+        if (expected.isEmpty()) return 1;
+        Set<String> found = new HashSet<>(got);
+        int hits = 0;
+        for (String id : expected) if (found.contains(id)) hits++;
+        return (double) hits / expected.size();
+    }
+
+    private List<VectorSearchService.SearchHit> search(String mode, float[] q, int k, int effort) {
+        return mode.equals("atlas")
+                ? vectorSearchService.atlasSearch(q, k, effort)
+                : localIndex.search(q, k, effort);
+    }
+
+    private List<Integer> efforts(int k, String mode, int corpusSize) {
+        int cap = mode.equals("atlas") ? ATLAS_MAX_CANDIDATES : Math.max(k, corpusSize);
+        TreeSet<Integer> out = new TreeSet<>();
+        out.add(k);
+        for (int e : sweep) if (e >= k && e <= cap) out.add(e);
+        return new ArrayList<>(out);
+    }
+
+    // ---------- queries ----------
+
+    private List<String> syntheticQueries(Path export, int n) throws IOException {
+        JsonNode root = om.readTree(new File(export.toString()));
+        JsonNode section = root.path("transactions");
+        JsonNode content = section.isArray() ? section : section.at("/paged/content");
+        List<JsonNode> txns = new ArrayList<>();
+        content.forEach(txns::add);
+        if (txns.isEmpty()) throw new IllegalStateException("No transactions found in " + export);
+
+        Random rnd = new Random(seed);
+        Set<String> out = new LinkedHashSet<>();
+        for (int attempt = 0; out.size() < n && attempt < n * 10; attempt++) {
+            JsonNode t = txns.get(rnd.nextInt(txns.size()));
+            String merchant = t.path("merchant").asText("unknown merchant");
+            String category = t.path("category").asText("uncategorized");
+            String when = t.path("occurredAt").asText("");
+            String date = when.length() >= 10 ? when.substring(0, 10) : when;
+            String month = when.length() >= 7 ? when.substring(0, 7) : when;
+            String amount = BigDecimal.valueOf(Math.abs(t.path("amountCents").asLong()), 2).toPlainString();
+            out.add(switch (rnd.nextInt(4)) {
+                case 0 -> String.format("How much did I spend at %s on %s?", merchant, date);
+                case 1 -> String.format("Show my %s transactions in %s", category, month);
+                case 2 -> String.format("Which purchase cost $%s on %s?", amount, date);
+                default -> String.format("How often did I pay %s in %s?", merchant, month);
+            });
+        }
+        return new ArrayList<>(out);
+    }
+
+    // ---------- ground truth ----------
+
+    private Corpus loadCorpus() {
+        List<String> ids = new ArrayList<>();
+        List<float[]> vectors = new ArrayList<>();
+        Query q = Query.query(Criteria.where("metadata.committed").ne(false));
+        q.fields().include("embedding");
+        try (Stream<Chunk> all = mongoTemplate.stream(q, Chunk.class)) {
+            all.forEach(c -> {
+                if (c.getEmbedding() == null || c.getEmbedding().isEmpty()) return;
+                float[] v = new float[c.getEmbedding().size()];
+                for (int i = 0; i < v.length; i++) v[i] = c.getEmbedding().get(i).floatValue();
+                ids.add(c.getId());
+                vectors.add(LocalChunkIndex.prefix(v, v.length));
+            });
+        }
+        return new Corpus(ids, vectors);
+    }
+
+    private record Corpus(List<String> ids, List<float[]> vectors) {
+        int size() {
+            return ids.size();
+        }
+
+        /** Exact cosine top-k by brute force over every stored vector. */
+        List<String> exactTop(float[] q, int k) {
+            return top(q, vectors, null, k).stream().map(ids::get).toList();
+        }
+
+        /** Positions of the best {@code k} vectors by dot product, among {@code candidates} or all. */
+        static List<Integer> top(float[] q, List<float[]> vectors, List<Integer> candidates, int k) {
+            List<Integer> pool = new ArrayList<>();
+            if (candidates != null) pool.addAll(candidates);
+            else for (int i = 0; i < vectors.size(); i++) pool.add(i);
+            double[] scores = new double[vectors.size()];
+            for (int i : pool) {
+                float[] v = vectors.get(i);
+                double s = 0;
+                if (v.length == q.length) for (int d = 0; d < v.length; d++) s += q[d] * v[d];
+                scores[i] = s;
+            }
+            pool.sort((a, b) -> Double.compare(scores[b], scores[a]));
+            return pool.subList(0, Math.min(k, pool.size()));
+        }
+    }
+
+    private static double percentile(double[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        return sorted[(int) Math.round(p * (sorted.length - 1))];
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.finance.assistantservice.service;
+
+import com.example.finance.assistantservice.dto.ShardSearchRequest;
+import com.example.finance.assistantservice.dto.ShardSearchResponse;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Coordinator side of sharded search: sends the query embedding to every shard node in
+ * parallel and merges their top-k lists with a bounded heap. Each shard gets
+ * {@code deadlineMs}; shards that miss it are left out and the result is flagged partial.
+ * The result is also partial unless the shard ids that answered cover
+ * {@code 0..shardCount-1}, which catches a node list that is missing a shard or names
+ * one twice.
+ *
+ * Shards without the change stream reload their snapshot when a newer ingest commits (see
+ * {@link LocalChunkIndex}). While that is rolling through the nodes, shards can answer from
+ * different data versions; such a merge is flagged partial too.
+ */
+@Service
+@RequiredArgsConstructor
+public class ScatterGatherSearchService {
+
+    private final RestTemplateBuilder restTemplateBuilder;
+
+    // comma-separated base URLs, e.g. http://localhost:8086,http://localhost:8087
+    @Value("${app.shard.nodes:}")
+    private List<String> nodes;
+
+    @Value("${app.shard.deadlineMs:800}")
+    private long deadlineMs;
+
+    // coordinator queries expected in flight at once; each holds one fan-out thread per node
+    @Value("${app.shard.maxConcurrentQueries:16}")
+    private int maxConcurrentQueries;
+
+    private RestTemplate rt;
+    private ExecutorService executor;
+
+    public record ScatterResult(List<VectorSearchService.SearchHit> hits,
+                                int shardsAsked,
+                                int shardsAnswered,
+                                boolean partial) {}
+
+    @PostConstruct
+    void start() {
+        nodes = nodes.stream().map(String::trim).filter(n -> !n.isEmpty()).toList();
+        rt = restTemplateBuilder
+                .setConnectTimeout(Duration.ofMillis(deadlineMs))
+                .setReadTimeout(Duration.ofMillis(deadlineMs))
+                .build();
+        AtomicInteger n = new AtomicInteger();
+        int threads = Math.max(1, nodes.size() * maxConcurrentQueries);
+        // no queue: time spent waiting for a thread would eat into the shard deadline
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), r -> {
+                    Thread t = new Thread(r, "shard-fanout-" + n.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        executor = pool;
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    public boolean isEnabled() {
+        return !nodes.isEmpty();
+    }
+
+    public ScatterResult search(float[] vector, int k) {
+        ShardSearchRequest req = new ShardSearchRequest(vector, k);
+        List<CompletableFuture<ShardSearchResponse>> calls = nodes.stream()
+                .map(node -> ask(node, req))
+                .toList();
+        CompletableFuture.allOf(calls.toArray(new CompletableFuture<?>[0])).join();
+
+        // min-heap holding the global best k
+        PriorityQueue<VectorSearchService.SearchHit> top =
+                new PriorityQueue<>(Comparator.comparingDouble(VectorSearchService.SearchHit::score));
+        Set<String> seen = new HashSet<>();
+        Set<String> versions = new HashSet<>();
+        Set<Integer> shardIds = new HashSet<>();
+        Set<Integer> shardCounts = new HashSet<>();
+        int answered = 0;
+        for (var call : calls) {
+            ShardSearchResponse resp = call.join();
+            if (resp == null) continue;
+            answered++;
+            if (resp.dataVersion() != null) versions.add(resp.dataVersion());
+            shardIds.add(resp.shardId());
+            shardCounts.add(resp.shardCount());
+            if (resp.hits() == null) continue;
+            for (var h : resp.hits()) {
+                if (!seen.add(h.id())) continue;
+                if (top.size() < k) {
+                    top.add(h);
+                } else if (h.score() > top.peek().score()) {
+                    top.poll();
+                    top.add(h);
+                }
+            }
+        }
+        List<VectorSearchService.SearchHit> hits = new ArrayList<>(top);
+        hits.sort(Comparator.comparingDouble(VectorSearchService.SearchHit::score).reversed());
+        boolean partial = answered < nodes.size() || versions.size() > 1 || !covers(shardIds, shardCounts);
+        return new ScatterResult(hits, nodes.size(), answered, partial);
+    }
+
+    /** True when every shard 0..count-1 answered and all shards agree on the count. */
+    private static boolean covers(Set<Integer> shardIds, Set<Integer> shardCounts) {
+        if (shardCounts.size() != 1) return false;
+        int count = shardCounts.iterator().next();
+        for (int id = 0; id < count; id++) {
+            if (!shardIds.contains(id)) return false;
+        }
+        return true;
+    }
+
+    private CompletableFuture<ShardSearchResponse> ask(String node, ShardSearchRequest req) {
+        try {
+            return CompletableFuture
+                    .supplyAsync(() -> rt.postForObject(node + "/api/assistant/shard/search", req, ShardSearchResponse.class), executor)
+                    // a slow or failed shard contributes nothing instead of holding up the answer
+                    .completeOnTimeout(null, deadlineMs, TimeUnit.MILLISECONDS)
+                    .exceptionally(e -> null);
+        } catch (RejectedExecutionException e) {
+            // more queries in flight than maxConcurrentQueries: skip the shard rather than queue past the deadline
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.finance.assistantservice.service;
+
+import com.example.finance.assistantservice.model.SearchEffort;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Search-effort settings chosen per k by {@link RetrievalEvaluator}: Atlas
+ * {@code numCandidates} and the two-stage rescore shortlist. They live in the
+ * {@code search_tuning} collection, so every replica serves the same values and a restart
+ * keeps them; each instance re-reads them at most every {@code refreshMs}. An untuned k
+ * borrows the setting of the nearest tuned k above it, or scales the largest tuned one.
+ */
+@Component
+@RequiredArgsConstructor
+public class SearchTuning {
+
+    static final String ATLAS = "atlas.numCandidates";
+    static final String TWO_STAGE = "twoStage.candidates";
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${app.vector.tuning.refreshMs:30000}")
+    private long refreshMs;
+
+    private volatile NavigableMap<Integer, Integer> atlas = new TreeMap<>();
+    private volatile NavigableMap<Integer, Integer> twoStage = new TreeMap<>();
+    private volatile long loadedAt;
+
+    public int numCandidates(int k, int fallback) {
+        refreshIfStale();
+        return lookup(atlas, k, fallback);
+    }
+
+    public int rescoreCandidates(int k, int fallback) {
+        refreshIfStale();
+        return lookup(twoStage, k, fallback);
+    }
+
+    public void updateNumCandidates(Map<Integer, Integer> byK) {
+        save(ATLAS, byK);
+    }
+
+    public void updateRescoreCandidates(Map<Integer, Integer> byK) {
+        save(TWO_STAGE, byK);
+    }
+
+    /** Writes Mongo first and only then reloads, so live values never run ahead of what is stored. */
+    private void save(String id, Map<Integer, Integer> byK) {
+        Update update = new Update().set("updatedAt", Instant.now());
+        byK.forEach((k, v) -> update.set("byK." + k, v));
+        mongoTemplate.upsert(Query.query(Criteria.where("_id").is(id)), update, SearchEffort.class);
+        reload();
+    }
+
+    private void refreshIfStale() {
+        if (System.currentTimeMillis() - loadedAt < refreshMs) return;
+        synchronized (this) {
+            if (System.currentTimeMillis() - loadedAt < refreshMs) return;
+            try {
+                reload();
+            } catch (RuntimeException e) {
+                // keep serving the last values; retried after the next interval
+                loadedAt = System.currentTimeMillis();
+            }
+        }
+    }
+
+    private synchronized void reload() {
+        atlas = read(ATLAS);
+        twoStage = read(TWO_STAGE);
+        loadedAt = System.currentTimeMillis();
+    }
+
+    private NavigableMap<Integer, Integer> read(String id) {
+        NavigableMap<Integer, Integer> out = new TreeMap<>();
+        SearchEffort doc = mongoTemplate.findById(id, SearchEffort.class);
+        if (doc != null && doc.getByK() != null) {
+            doc.getByK().forEach((k, v) -> out.put(Integer.parseInt(k), v));
+        }
+        return out;
+    }
+
+    static int lookup(NavigableMap<Integer, Integer> tuned, int k, int fallback) {
+        var above = tuned.ceilingEntry(k);
+        if (above != null) return Math.max(k, above.getValue());
+        var below = tuned.floorEntry(k);
+        if (below != null) return Math.max(k, (int) Math.ceil(below.getValue() * (double) k / below.getKey()));
+        return fallback;
+    }
+}
@@ -22,6 +22,9 @@ public class VectorSearchService {
     private final MongoTemplate mongoTemplate;
     private final EmbeddingModel embeddingModel;
     private final ChunkRepository repo;
+    private final LocalChunkIndex localIndex;
+    private final ScatterGatherSearchService scatterGather;
+    private final SearchTuning searchTuning;
 
     @Value("${app.vector.indexName:vector_index}")
     private String indexName;
@@ -29,35 +32,24 @@ public class VectorSearchService {
     @Value("${app.vector.useAtlasVector:true}")
     private boolean useAtlasVector;
 
+    // true once the Atlas index declares metadata.committed as a filter field (see atlasSearch)
+    @Value("${app.vector.atlasCommittedFilter:false}")
+    private boolean atlasCommittedFilter;
+
     public List<SearchHit> search(String query, int k) {
         Embedding emb = embeddingModel.embed(query).content();
 
-        if (useAtlasVector) {
-            MongoCollection<Document> col = mongoTemplate.getCollection("chunks");
-            Document vectorSearch = new Document("$vectorSearch",
-                    new Document("index", indexName)
-                            .append("path", "embedding")
-                            .append("queryVector", toList(emb))
-                            .append("numCandidates", Math.max(200, k * 40))
-                            .append("limit", k));
-
-            Document addScore = new Document("$addFields", new Document("score", new Document("$meta", "vectorSearchScore")));
-            Document project = new Document("$project", new Document("text", 1).append("metadata", 1).append("score", 1));
-
-            List<Document> pipeline = List.of(vectorSearch, addScore, project);
-
-            AggregateIterable<Document> agg = col.aggregate(pipeline);
-            List<SearchHit> hits = new ArrayList<>();
-            for (Document d : agg) {
-                hits.add(new SearchHit(d.getObjectId("_id").toHexString(),
-                        d.getString("text"),
-                        (Double) d.get("score"),
-                        (Map<String, Object>) d.get("metadata")));
-            }
-            return hits;
+        if (scatterGather.isEnabled()) {
+            // Coordinator: every shard node searches its own slice of the index
+            return scatterGather.search(emb.vector(), k).hits();
+        } else if (useAtlasVector) {
+            return atlasSearch(emb.vector(), k, searchTuning.numCandidates(k, Math.max(200, k * 40)));
+        } else if (localIndex.isResident()) {
+            // In-memory index: synced by the change-stream listener and/or two-stage prefix search
+            return localIndex.search(emb.vector(), k);
         } else {
             // Fallback: compute cosine in Java against all embeddings
-            List<Chunk> all = repo.findAll();
+            List<Chunk> all = repo.findCommitted();
             var vec = emb.vector();
             return all.stream()
                     .map(c -> new SearchHit(
@@ -71,8 +63,55 @@ public class VectorSearchService {
         }
     }
 
-    private static List<Double> toList(Embedding e) {
-        float[] v = e.vector();
+    public boolean usesAtlas() {
+        return useAtlasVector;
+    }
+
+    /**
+     * $vectorSearch with an explicit search effort; the evaluator sweeps numCandidates through here.
+     *
+     * Chunks of an ingest that has not committed yet ({@code metadata.committed: false}) are
+     * skipped. With {@code app.vector.atlasCommittedFilter} on, that happens inside the index,
+     * which needs the field declared as a filter:
+     * <pre>
+     * { "fields": [
+     *     { "type": "vector", "path": "embedding", "numDimensions": 1536, "similarity": "cosine" },
+     *     { "type": "filter", "path": "metadata.committed" } ] }
+     * </pre>
+     * Otherwise it over-fetches {@code 2k} and drops them with a {@code $match}, which works
+     * on the plain vector index but can return fewer than k hits while a large ingest runs.
+     */
+    public List<SearchHit> atlasSearch(float[] vector, int k, int numCandidates) {
+        MongoCollection<Document> col = mongoTemplate.getCollection("chunks");
+        Document committed = new Document("metadata.committed", new Document("$ne", false));
+        int limit = atlasCommittedFilter ? k : 2 * k;
+        Document search = new Document("index", indexName)
+                .append("path", "embedding")
+                .append("queryVector", toList(vector))
+                .append("numCandidates", Math.max(limit, numCandidates))
+                .append("limit", limit);
+        if (atlasCommittedFilter) search.append("filter", committed);
+
+        Document addScore = new Document("$addFields", new Document("score", new Document("$meta", "vectorSearchScore")));
+        Document project = new Document("$project", new Document("text", 1).append("metadata", 1).append("score", 1));
+
+        List<Document> pipeline = atlasCommittedFilter
+                ? List.of(new Document("$vectorSearch", search), addScore, project)
+                : List.of(new Document("$vectorSearch", search), new Document("$match", committed),
+                        new Document("$limit", k), addScore, project);
+
+        AggregateIterable<Document> agg = col.aggregate(pipeline);
+        List<SearchHit> hits = new ArrayList<>();
+        for (Document d : agg) {
+            hits.add(new SearchHit(String.valueOf(d.get("_id")),  // ObjectId or job-scoped string id
+                    d.getString("text"),
+                    (Double) d.get("score"),
+                    (Map<String, Object>) d.get("metadata")));
+        }
+        return hits;
+    }
+
+    private static List<Double> toList(float[] v) {
         List<Double> out = new ArrayList<>(v.length);
         for (float f : v) out.add((double) f);
         return out;
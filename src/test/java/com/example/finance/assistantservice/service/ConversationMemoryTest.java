@@ -0,0 +1,99 @@
+package com.example.finance.assistantservice.service;
+
+import dev.langchain4j.model.Tokenizer;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ConversationMemoryTest {
+
+	private static final int RECENT_TOKENS = 100;
+	private static final int FOLDING_TOKENS = 100;
+	private static final int SUMMARY_TOKENS = 20;
+
+	private final ChatLanguageModel chatModel = mock(ChatLanguageModel.class);
+	private ConversationMemory memory;
+
+	@BeforeEach
+	void createMemory() {
+		// one token per word keeps the budgets easy to reason about
+		Tokenizer tokenizer = mock(Tokenizer.class);
+		when(tokenizer.estimateTokenCountInText(anyString())).thenAnswer(inv -> words(inv.getArgument(0)));
+		memory = new ConversationMemory(chatModel, tokenizer);
+		ReflectionTestUtils.setField(memory, "maxSessions", 100);
+		ReflectionTestUtils.setField(memory, "idleTtl", Duration.ofMinutes(30));
+		ReflectionTestUtils.setField(memory, "recentTurns", 4);
+		ReflectionTestUtils.setField(memory, "recentTokens", RECENT_TOKENS);
+		ReflectionTestUtils.setField(memory, "summaryTokens", SUMMARY_TOKENS);
+		ReflectionTestUtils.setField(memory, "foldingTokens", FOLDING_TOKENS);
+		ReflectionTestUtils.setField(memory, "summaryThreads", 1);
+		memory.startSummarizer();
+	}
+
+	@Test
+	void oversizedTurnIsClippedToTheRecentBudget() {
+		memory.record("s", "question " + filler(200), "answer " + filler(500));
+
+		String history = memory.history("s");
+		assertThat(history).contains("User: question").contains("Assistant: answer");
+		// 2 header/label words per line on top of the clipped turn
+		assertThat(words(history)).isLessThanOrEqualTo(RECENT_TOKENS + 4);
+	}
+
+	@Test
+	void foldedTurnsEndUpInTheSummary() throws Exception {
+		when(chatModel.generate(anyString())).thenReturn("user asked about groceries " + filler(100));
+		for (int i = 1; i <= 6; i++) memory.record("s", "question-" + i, "answer-" + i + " " + filler(10));
+
+		String history = awaitHistoryWithout("question-2");
+		assertThat(history).startsWith("CONVERSATION SUMMARY:\nuser asked about groceries");
+		assertThat(history).doesNotContain("question-1").contains("question-3").contains("question-6");
+		String summary = history.substring(0, history.indexOf("RECENT TURNS:"));
+		assertThat(words(summary)).isLessThanOrEqualTo(SUMMARY_TOKENS + 2);
+	}
+
+	@Test
+	void backlogIsCappedWhenSummarizationFails() {
+		when(chatModel.generate(anyString())).thenThrow(new RuntimeException("model unavailable"));
+		for (int i = 1; i <= 50; i++) memory.record("s", "question-" + i + " " + filler(9), "answer-" + i + " " + filler(19));
+
+		String history = memory.history("s");
+		assertThat(history).contains("earlier turns omitted").contains("question-50").doesNotContain("question-1 ");
+		// 30-token turns: at most 3 fit the recent window and 3 the folding backlog
+		assertThat(history.split("User: ", -1).length - 1).isLessThanOrEqualTo(6);
+		assertThat(history).doesNotContain("CONVERSATION SUMMARY");
+	}
+
+	@Test
+	void unknownSessionHasNoHistory() {
+		assertThat(memory.history("missing")).isEmpty();
+		assertThat(memory.standaloneQuery("missing", "and last month?")).isEqualTo("and last month?");
+	}
+
+	private String awaitHistoryWithout(String text) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		String history = memory.history("s");
+		while (history.contains(text) && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+			history = memory.history("s");
+		}
+		return history;
+	}
+
+	private static String filler(int words) {
+		return "word ".repeat(words).trim();
+	}
+
+	private static int words(String text) {
+		String t = text.trim();
+		return t.isEmpty() ? 0 : t.split("\\s+").length;
+	}
+}
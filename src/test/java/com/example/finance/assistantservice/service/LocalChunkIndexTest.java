@@ -0,0 +1,131 @@
+package com.example.finance.assistantservice.service;
+
+import com.example.finance.assistantservice.model.Chunk;
+import com.example.finance.assistantservice.model.IngestJob;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class LocalChunkIndexTest {
+
+	private static final int DIMS = 64;
+	private static final int PREFIX_DIMS = 16;
+	private static final int K = 10;
+
+	private final Random random = new Random(42);
+	private final Map<String, Chunk> corpus = new LinkedHashMap<>();
+	private MongoTemplate mongo;
+
+	@BeforeEach
+	void stubCorpus() {
+		for (int i = 0; i < 500; i++) {
+			float[] v = vector();
+			List<Double> embedding = new ArrayList<>();
+			for (float x : v) embedding.add((double) x);
+			String id = "c" + i;
+			corpus.put(id, Chunk.builder().id(id).text("chunk " + i).embedding(embedding)
+					.embeddingF32(LocalChunkIndex.toF32(v)).metadata(new HashMap<>()).build());
+		}
+		mongo = mock(MongoTemplate.class);
+		when(mongo.stream(any(Query.class), eq(Chunk.class))).thenAnswer(inv -> corpus.values().stream());
+		// rescore fetch: only the shortlisted ids
+		when(mongo.find(any(Query.class), eq(Chunk.class))).thenAnswer(inv -> {
+			Document in = (Document) inv.<Query>getArgument(0).getQueryObject().get("_id");
+			return in.getList("$in", String.class).stream().map(corpus::get).toList();
+		});
+		when(mongo.findOne(any(Query.class), eq(IngestJob.class))).thenReturn(null);
+	}
+
+	@Test
+	void prefixIsTruncatedAndUnitLength() {
+		float[] p = LocalChunkIndex.prefix(new float[]{3, 4, 12}, 2);
+		assertThat(p).containsExactly(0.6f, 0.8f);
+		assertThat(LocalChunkIndex.prefix(p, 10)).hasSize(2);
+	}
+
+	@Test
+	void float32EncodingRoundTrips() {
+		float[] v = vector();
+		byte[] bytes = LocalChunkIndex.toF32(v);
+		assertThat(bytes).hasSize(DIMS * Float.BYTES);
+		assertThat(LocalChunkIndex.fromF32(bytes, DIMS)).containsExactly(v);
+		assertThat(LocalChunkIndex.fromF32(bytes, 8)).containsExactly(Arrays.copyOf(v, 8));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void twoStageKeepsOnlyThePrefixResident() {
+		LocalChunkIndex twoStage = index(true);
+		twoStage.rebuild();
+		var entries = (Map<String, LocalChunkIndex.Entry>) ReflectionTestUtils.getField(twoStage, "entries");
+		assertThat(entries).hasSize(corpus.size());
+		for (var e : entries.values()) {
+			assertThat(e.unit()).hasSize(PREFIX_DIMS);
+			assertThat(e.text()).isNull();
+		}
+	}
+
+	@Test
+	void twoStageWithFullShortlistMatchesExactTopK() {
+		LocalChunkIndex exact = index(false);
+		LocalChunkIndex twoStage = index(true);
+		for (int i = 0; i < 20; i++) {
+			float[] q = vector();
+			var expected = exact.search(q, K, 0);
+			var got = twoStage.search(q, K, corpus.size());
+			assertThat(ids(got)).containsExactlyElementsOf(ids(expected));
+			assertThat(got.get(0).text()).isEqualTo(corpus.get(got.get(0).id()).getText());
+			for (int j = 0; j < K; j++) {
+				assertThat(got.get(j).score()).isCloseTo(expected.get(j).score(), within(1e-5));
+			}
+		}
+	}
+
+	@Test
+	void twoStageShortlistRecallsMostOfExactTopK() {
+		LocalChunkIndex exact = index(false);
+		LocalChunkIndex twoStage = index(true);
+		int found = 0;
+		int queries = 50;
+		for (int i = 0; i < queries; i++) {
+			float[] q = vector();
+			Set<String> truth = new HashSet<>(ids(exact.search(q, K, 0)));
+			var got = twoStage.search(q, K, 100);
+			assertThat(got).hasSize(K);
+			found += (int) ids(got).stream().filter(truth::contains).count();
+		}
+		assertThat(found / (double) (queries * K)).isGreaterThan(0.9);
+	}
+
+	private LocalChunkIndex index(boolean twoStage) {
+		LocalChunkIndex index = new LocalChunkIndex(mongo, mock(SearchTuning.class));
+		ReflectionTestUtils.setField(index, "twoStage", twoStage);
+		ReflectionTestUtils.setField(index, "firstStageDims", PREFIX_DIMS);
+		ReflectionTestUtils.setField(index, "shardCount", 1);
+		ReflectionTestUtils.setField(index, "snapshotCheckMs", 60_000L);
+		return index;
+	}
+
+	/** Energy concentrated in the leading dims, as with Matryoshka-trained embeddings. */
+	private float[] vector() {
+		float[] v = new float[DIMS];
+		for (int i = 0; i < DIMS; i++) v[i] = (float) (random.nextGaussian() / Math.sqrt(1 + i));
+		return v;
+	}
+
+	private static List<String> ids(List<VectorSearchService.SearchHit> hits) {
+		return hits.stream().map(VectorSearchService.SearchHit::id).toList();
+	}
+}
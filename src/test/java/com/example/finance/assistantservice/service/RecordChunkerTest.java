@@ -0,0 +1,70 @@
+package com.example.finance.assistantservice.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.model.Tokenizer;
+import dev.langchain4j.model.openai.OpenAiTokenizer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecordChunkerTest {
+
+	private static final int MAX_TOKENS = 256;
+
+	private final Tokenizer tokenizer = new OpenAiTokenizer("text-embedding-3-small");
+	private JsonNode export;
+	private List<RecordChunker.RecordChunk> chunks;
+
+	@BeforeEach
+	void chunkBundledExport() throws Exception {
+		RecordChunker chunker = new RecordChunker(tokenizer);
+		ReflectionTestUtils.setField(chunker, "maxTokens", MAX_TOKENS);
+		export = new ObjectMapper().readTree(new File("finance_mock_backup.json"));
+		chunks = chunker.chunkExport(export);
+	}
+
+	@Test
+	void chunksStayWithinTheTokenBudget() {
+		assertThat(chunks).isNotEmpty();
+		for (var c : chunks) {
+			assertThat(c.tokens()).as(c.text()).isLessThanOrEqualTo(MAX_TOKENS);
+			assertThat(tokenizer.estimateTokenCountInText(c.text())).as(c.text()).isLessThanOrEqualTo(MAX_TOKENS);
+		}
+	}
+
+	@Test
+	void everyTransactionIsRenderedOnceInItsMonth() {
+		var txnChunks = chunks.stream().filter(c -> c.section().equals("transactions")).toList();
+		assertThat(txnChunks.stream().mapToInt(RecordChunker.RecordChunk::records).sum())
+				.isEqualTo(export.at("/transactions/paged/content").size());
+		for (var c : txnChunks) {
+			String[] lines = c.text().split("\n");
+			assertThat(lines[0]).isEqualTo("Transactions " + c.period());
+			assertThat(lines).hasSize(c.records() + 1);
+			for (int i = 1; i < lines.length; i++) assertThat(lines[i]).startsWith(c.period() + "-");
+		}
+	}
+
+	@Test
+	void amountsInCentsAreRenderedInMajorUnits() {
+		String all = String.join("\n", chunks.stream().map(RecordChunker.RecordChunk::text).toList());
+		assertThat(all)
+				.contains("2025-09-21 CVS -195.16 USD Groceries")
+				.contains("balance 12456.20")
+				.contains("creditLimit 5000.00")
+				.contains("minimumPayment 25.00")
+				.contains("overdraftLimit 1000.00")
+				.contains("annualFee 250.00")
+				.contains("Net Worth: value -25399.59")
+				.contains("Avg. Daily Spend (30d): value 269.25")
+				.contains("Monthly Savings Rate: value -0.2806")
+				.contains("Runway (months): value -20.46")
+				.contains("Emergency Fund: target 10000.00");
+	}
+}
@@ -0,0 +1,133 @@
+package com.example.finance.assistantservice.service;
+
+import com.example.finance.assistantservice.model.Chunk;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class RetrievalEvaluatorTest {
+
+	private static final int DIMS = 64;
+	private static final Path EXPORT = Path.of("finance_mock_backup.json");
+
+	private final Random random = new Random(7);
+	private final Map<String, Chunk> corpus = new LinkedHashMap<>();
+	private final VectorSearchService vectorSearch = mock(VectorSearchService.class);
+	private final SearchTuning tuning = mock(SearchTuning.class);
+	private LocalChunkIndex index;
+	private RetrievalEvaluator evaluator;
+
+	@BeforeEach
+	void createEvaluator() {
+		for (int i = 0; i < 500; i++) {
+			float[] v = vector();
+			List<Double> embedding = new ArrayList<>();
+			for (float x : v) embedding.add((double) x);
+			corpus.put("c" + i, Chunk.builder().id("c" + i).text("chunk " + i).embedding(embedding)
+					.embeddingF32(LocalChunkIndex.toF32(v)).build());
+		}
+		MongoTemplate mongo = mock(MongoTemplate.class);
+		when(mongo.stream(any(Query.class), eq(Chunk.class))).thenAnswer(inv -> corpus.values().stream());
+		when(mongo.find(any(Query.class), eq(Chunk.class))).thenAnswer(inv -> {
+			Document in = (Document) inv.<Query>getArgument(0).getQueryObject().get("_id");
+			return in.getList("$in", String.class).stream().map(corpus::get).toList();
+		});
+		when(tuning.rescoreCandidates(anyInt(), anyInt())).thenAnswer(inv -> inv.getArgument(1));
+
+		index = new LocalChunkIndex(mongo, tuning);
+		ReflectionTestUtils.setField(index, "twoStage", true);
+		ReflectionTestUtils.setField(index, "firstStageDims", 8);
+		ReflectionTestUtils.setField(index, "candidates", 100);
+		ReflectionTestUtils.setField(index, "shardCount", 1);
+		ReflectionTestUtils.setField(index, "snapshotCheckMs", 60_000L);
+
+		EmbeddingModel embeddings = mock(EmbeddingModel.class);
+		when(embeddings.embedAll(anyList())).thenAnswer(inv -> {
+			List<Embedding> out = new ArrayList<>();
+			for (int i = 0; i < inv.<List<?>>getArgument(0).size(); i++) out.add(Embedding.from(vector()));
+			return Response.from(out);
+		});
+
+		evaluator = new RetrievalEvaluator(embeddings, mongo, vectorSearch, index, tuning);
+		ReflectionTestUtils.setField(evaluator, "sweep", List.of(10, 20, 50, 100, 200, 400, 800));
+		ReflectionTestUtils.setField(evaluator, "dimsSweep", List.of(8, 16, 64));
+		ReflectionTestUtils.setField(evaluator, "seed", 42L);
+	}
+
+	@Test
+	void picksTheSmallestEffortThatReachesTheTargetRecall() throws Exception {
+		var report = evaluator.tune(EXPORT, 30, List.of(10), 0.95, true);
+
+		assertThat(report.mode()).isEqualTo("twoStage");
+		assertThat(report.chunks()).isEqualTo(corpus.size());
+		var result = report.results().get(0);
+		// efforts beyond the corpus size are not swept
+		assertThat(result.points()).extracting(RetrievalEvaluator.Point::effort).containsExactly(10, 20, 50, 100, 200, 400);
+		assertThat(result.targetMet()).isTrue();
+		for (var p : result.points()) {
+			assertThat(p.recall()).isBetween(0.0, 1.0);
+			if (p.effort() < result.chosen()) assertThat(p.recall()).isLessThan(0.95);
+			if (p.effort() == result.chosen()) assertThat(p.recall()).isGreaterThanOrEqualTo(0.95);
+		}
+		assertThat(result.points().get(0).recall()).isLessThan(1.0);
+		verify(tuning).updateRescoreCandidates(Map.of(10, result.chosen()));
+	}
+
+	@Test
+	void unreachableTargetFallsBackToTheLargestEffortWithoutClaimingIt() throws Exception {
+		var report = evaluator.tune(EXPORT, 10, List.of(10), 1.01, false);
+
+		var result = report.results().get(0);
+		assertThat(result.targetMet()).isFalse();
+		assertThat(result.chosen()).isEqualTo(400);
+		assertThat(report.applied()).isFalse();
+		verify(tuning, never()).updateRescoreCandidates(any());
+	}
+
+	@Test
+	void fullWidthFirstStageHasExactRecall() throws Exception {
+		var report = evaluator.tune(EXPORT, 10, List.of(10), 0.95, false);
+
+		assertThat(report.firstStage()).extracting(RetrievalEvaluator.DimsPoint::dims).containsExactlyInAnyOrder(8, 16, 64);
+		var full = report.firstStage().stream().filter(p -> p.dims() == DIMS).findFirst().orElseThrow();
+		assertThat(full.recall()).isEqualTo(1.0);
+		assertThat(report.note()).contains("configured: 8");
+	}
+
+	@Test
+	void exactSearchHasNothingToTune() throws Exception {
+		ReflectionTestUtils.setField(index, "twoStage", false);
+
+		var report = evaluator.tune(EXPORT, 10, List.of(10), 0.95, true);
+
+		assertThat(report.mode()).isEqualTo("exact");
+		assertThat(report.results()).isEmpty();
+		verifyNoInteractions(tuning);
+	}
+
+	private float[] vector() {
+		float[] v = new float[DIMS];
+		for (int i = 0; i < DIMS; i++) v[i] = (float) (random.nextGaussian() / Math.sqrt(1 + i));
+		return v;
+	}
+}
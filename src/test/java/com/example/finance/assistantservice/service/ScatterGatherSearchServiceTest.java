@@ -0,0 +1,101 @@
+package com.example.finance.assistantservice.service;
+
+import com.example.finance.assistantservice.dto.ShardSearchResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ScatterGatherSearchServiceTest {
+
+	private static final List<String> NODES = List.of("http://a", "http://b", "http://c");
+
+	private final RestTemplate rt = mock(RestTemplate.class);
+	private ScatterGatherSearchService service;
+
+	@BeforeEach
+	void startCoordinator() {
+		service = new ScatterGatherSearchService(new RestTemplateBuilder());
+		ReflectionTestUtils.setField(service, "nodes", NODES);
+		ReflectionTestUtils.setField(service, "deadlineMs", 2000L);
+		ReflectionTestUtils.setField(service, "maxConcurrentQueries", 2);
+		service.start();
+		ReflectionTestUtils.setField(service, "rt", rt);
+	}
+
+	@Test
+	void mergeKeepsTheGlobalTopKWithoutDuplicates() {
+		answer("http://a", shard(0, 3, "v1", hit("a1", 0.9), hit("a2", 0.5), hit("a3", 0.1)));
+		answer("http://b", shard(1, 3, "v1", hit("b1", 0.8), hit("a1", 0.9), hit("b2", 0.4)));
+		answer("http://c", shard(2, 3, "v1", hit("c1", 0.7), hit("c2", 0.6)));
+
+		var result = service.search(new float[]{1}, 4);
+
+		assertThat(result.hits()).extracting(VectorSearchService.SearchHit::id).containsExactly("a1", "b1", "c1", "c2");
+		assertThat(result.shardsAsked()).isEqualTo(3);
+		assertThat(result.shardsAnswered()).isEqualTo(3);
+		assertThat(result.partial()).isFalse();
+	}
+
+	@Test
+	void failedShardIsLeftOutAndFlagsPartial() {
+		answer("http://a", shard(0, 3, "v1", hit("a1", 0.9)));
+		answer("http://b", shard(1, 3, "v1", hit("b1", 0.8)));
+		when(rt.postForObject(eq("http://c/api/assistant/shard/search"), any(), eq(ShardSearchResponse.class)))
+				.thenThrow(new ResourceAccessException("connection refused"));
+
+		var result = service.search(new float[]{1}, 5);
+
+		assertThat(result.hits()).extracting(VectorSearchService.SearchHit::id).containsExactly("a1", "b1");
+		assertThat(result.shardsAnswered()).isEqualTo(2);
+		assertThat(result.partial()).isTrue();
+	}
+
+	@Test
+	void nodeListThatNamesAShardTwiceIsPartial() {
+		answer("http://a", shard(0, 3, "v1", hit("a1", 0.9)));
+		answer("http://b", shard(1, 3, "v1", hit("b1", 0.8)));
+		answer("http://c", shard(1, 3, "v1", hit("b1", 0.8)));
+
+		var result = service.search(new float[]{1}, 5);
+
+		assertThat(result.shardsAnswered()).isEqualTo(3);
+		assertThat(result.hits()).hasSize(2);
+		assertThat(result.partial()).isTrue();
+	}
+
+	@Test
+	void shardsDisagreeingOnCountOrVersionArePartial() {
+		answer("http://a", shard(0, 3, "v1"));
+		answer("http://b", shard(1, 3, "v1"));
+		answer("http://c", shard(2, 4, "v1"));
+		assertThat(service.search(new float[]{1}, 5).partial()).isTrue();
+
+		answer("http://c", shard(2, 3, "v2"));
+		assertThat(service.search(new float[]{1}, 5).partial()).isTrue();
+	}
+
+	private void answer(String node, ShardSearchResponse response) {
+		when(rt.postForObject(eq(node + "/api/assistant/shard/search"), any(), eq(ShardSearchResponse.class)))
+				.thenReturn(response);
+	}
+
+	private static ShardSearchResponse shard(int id, int count, String version, VectorSearchService.SearchHit... hits) {
+		return new ShardSearchResponse(id, count, 100, version, List.of(hits));
+	}
+
+	private static VectorSearchService.SearchHit hit(String id, double score) {
+		return new VectorSearchService.SearchHit(id, "text " + id, score, Map.of());
+	}
+}
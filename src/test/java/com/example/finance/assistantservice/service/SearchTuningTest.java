@@ -0,0 +1,70 @@
+package com.example.finance.assistantservice.service;
+
+import com.example.finance.assistantservice.model.SearchEffort;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SearchTuningTest {
+
+	private final MongoTemplate mongo = mock(MongoTemplate.class);
+	private SearchTuning tuning;
+
+	@BeforeEach
+	void createTuning() {
+		tuning = new SearchTuning(mongo);
+		ReflectionTestUtils.setField(tuning, "refreshMs", 60_000L);
+	}
+
+	@Test
+	void untunedKBorrowsTheNearestTunedKAbove() {
+		var tuned = new TreeMap<>(Map.of(10, 150, 50, 400));
+		assertThat(SearchTuning.lookup(tuned, 10, 99)).isEqualTo(150);
+		assertThat(SearchTuning.lookup(tuned, 5, 99)).isEqualTo(150);
+		assertThat(SearchTuning.lookup(tuned, 20, 99)).isEqualTo(400);
+	}
+
+	@Test
+	void kAboveTheLargestTunedOneScalesItsEffort() {
+		var tuned = new TreeMap<>(Map.of(10, 150, 50, 400));
+		assertThat(SearchTuning.lookup(tuned, 100, 99)).isEqualTo(800);
+		assertThat(SearchTuning.lookup(tuned, 75, 99)).isEqualTo(600);
+	}
+
+	@Test
+	void effortIsNeverBelowKAndFallsBackWhenNothingIsTuned() {
+		assertThat(SearchTuning.lookup(new TreeMap<>(Map.of(10, 5)), 8, 99)).isEqualTo(8);
+		assertThat(SearchTuning.lookup(new TreeMap<>(), 10, 99)).isEqualTo(99);
+	}
+
+	@Test
+	void valuesAreReadFromMongo() {
+		when(mongo.findById(SearchTuning.TWO_STAGE, SearchEffort.class))
+				.thenReturn(SearchEffort.builder().id(SearchTuning.TWO_STAGE).byK(Map.of("10", 120)).build());
+
+		assertThat(tuning.rescoreCandidates(10, 100)).isEqualTo(120);
+		assertThat(tuning.numCandidates(10, 100)).isEqualTo(100);
+	}
+
+	@Test
+	void failedSaveLeavesLiveValuesUnchanged() {
+		when(mongo.upsert(any(Query.class), any(Update.class), eq(SearchEffort.class)))
+				.thenThrow(new IllegalStateException("write failed"));
+
+		assertThatThrownBy(() -> tuning.updateNumCandidates(Map.of(10, 500))).isInstanceOf(IllegalStateException.class);
+		assertThat(tuning.numCandidates(10, 100)).isEqualTo(100);
+	}
+}